@@ -1,35 +1,88 @@
+package rubank;
+
+import rubank.AccountKind;
+import rubank.Date;
+import rubank.Money;
 import rubank.Profile;
+import rubank.RateTable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.text.DecimalFormat;
+import java.util.Comparator;
 
 /**
  *Implements Comparable interface and represents the general type of account.
  * Attributes for each account holder's profile and balance.
  * Abstract methods for calculating monthly fees & Interests.
+ * The balance can be changed by many threads at once without a lock: depositCents() and
+ * withdrawCents() update it with a compare-and-set retry loop.
  @author Dany Chucri, Madhur Nutulapati
  */
 public abstract class Account implements Comparable<Account> {
     protected Profile holder; // Profile of the bank account owner
-    protected double balance; // Current balance in the account
+    protected long balance; // Current balance in the account, in cents; updated atomically through BALANCE
+    int slot; // Position in the AccountDatabase accounts array, kept up to date by the database
+
+    /**
+     Orders accounts by account kind, then by holder profile, without building any strings.
+     */
+    public static final Comparator<Account> BY_KIND_AND_HOLDER = Account::compareTo;
+
+    private static final VarHandle BALANCE;
+
+    static {
+        try {
+            BALANCE = MethodHandles.lookup().findVarHandle(Account.class, "balance", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
 
-    public abstract double monthlyInterest();
+    public abstract long monthlyInterestCents();
 
-    public abstract double monthlyFee();
+    public abstract long monthlyFeeCents();
 
     /**
      Creates an instance of Account.
      @param holder The profile class object holder.
-     @param balance the bank balance given by the user.
+     @param balance the bank balance given by the user, in dollars; rounded to the nearest cent.
      */
     public Account(Profile holder, double balance) {
         this.holder = holder;
-        this.balance = balance;
+        this.balance = Money.toCents(balance);
+    }
+
+    /**
+     Monthly interest in dollars, for display.
+     @return the monthly interest from monthlyInterestCents() in dollars.
+     */
+    public double monthlyInterest() {
+        return Money.toDollars(monthlyInterestCents());
+    }
+
+    /**
+     Monthly fee in dollars, for display.
+     @return the monthly fee from monthlyFeeCents() in dollars.
+     */
+    public double monthlyFee() {
+        return Money.toDollars(monthlyFeeCents());
     }
 
     /**
      Basic getter for an Account's Balance.
-     @return The double balance value.
+     @return The balance in dollars.
      */
     public double getBalance() {
-        return balance;
+        return Money.toDollars(getBalanceCents());
+    }
+
+    /**
+     Basic getter for an Account's Balance in cents.
+     @return The exact balance in cents.
+     */
+    public long getBalanceCents() {
+        return (long) BALANCE.getVolatile(this);
     }
 
     /**
@@ -42,22 +95,160 @@ public abstract class Account implements Comparable<Account> {
 
     /**
      Basic setter for updating and setting the new balance value.
-     @param newBalance setting the newBalance to the balance variable
+     @param newBalance setting the newBalance to the balance variable, in dollars; rounded to the nearest cent.
      */
     public void setBalance(double newBalance) {
-        balance = newBalance;
+        setBalanceCents(Money.toCents(newBalance));
+    }
+
+    /**
+     Basic setter for updating and setting the new balance value in cents.
+     @param newBalance setting the newBalance in cents to the balance variable
+     */
+    public void setBalanceCents(long newBalance) {
+        BALANCE.setVolatile(this, newBalance);
+    }
+
+    /**
+     Deposits an amount with a lock-free compare-and-set loop, so concurrent deposits are never lost.
+     @param amountCents the amount to deposit, in cents.
+     @return the balance after the deposit, in cents.
+     @throws ArithmeticException if the balance would overflow.
+     */
+    public long depositCents(long amountCents) {
+        long current = (long) BALANCE.getVolatile(this);
+        while (true) {
+            long next = Math.addExact(current, amountCents);
+            long witness = (long) BALANCE.compareAndExchange(this, current, next);
+            if (witness == current) {
+                return next;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     Withdraws an amount with a lock-free compare-and-set loop. The insufficient-funds check is made
+     on the same balance the update replaces, so two withdrawals can never overdraw the account together.
+     @param amountCents the amount to withdraw, in cents.
+     @return true if the amount was withdrawn, false if insufficient fund.
+     */
+    public boolean withdrawCents(long amountCents) {
+        long current = (long) BALANCE.getVolatile(this);
+        while (true) {
+            long next = current - amountCents;
+            if (next < 0) {
+                return false;
+            }
+            long witness = (long) BALANCE.compareAndExchange(this, current, next);
+            if (witness == current) {
+                return true;
+            }
+            current = witness;
+        }
     }
 
     /**
-     abstract declaration to create subclasses custom string representations.
+     The word holding all of the account's mutable state, read atomically.
+     For most accounts it is the balance in cents.
+     @return the current state word.
+     */
+    long word() {
+        return (long) BALANCE.getVolatile(this);
+    }
+
+    /**
+     Replaces the state word if it still holds the expected value.
+     @param expected the word read earlier.
+     @param next the word to store.
+     @return true if the word was replaced.
+     */
+    boolean compareAndSetWord(long expected, long next) {
+        return BALANCE.compareAndSet(this, expected, next);
+    }
+
+    /**
+     Computes the state word after one month of fees and interest, from the word before it.
+     @param word a state word read by word().
+     @param rates the rate table of the month-end.
+     @return the state word with the fee and interest applied.
+     */
+    abstract long monthEndWord(long word, RateTable rates);
+
+    /**
+     Applies one month of fees and interest in a compare-and-set loop, computing them from the
+     state the update replaces. Used when a month-end batch finds the account changed since it was captured,
+     with the batch's rate table, so one month-end never mixes two tables.
+     @param rates the rate table of the month-end.
+     */
+    void applyMonthEndAtomically(RateTable rates) {
+        long current = word();
+        while (!compareAndSetWord(current, monthEndWord(current, rates))) {
+            current = word();
+        }
+    }
+
+    /**
+     Builds the account type's custom string representation through appendTo().
      @return a string that represents specific account type's state,holder's name, account type, balance.
      */
-    public abstract String toString();
+    @Override
+    public String toString() {
+        StringBuilder row = new StringBuilder();
+        appendTo(row, Money.formatter());
+        return row.toString();
+    }
 
     /**
-     abstract declaration should implement own comparison logic. Compare two accounts based on various criteria.
+     Appends the custom string representation of an account to a row being built, from its current state.
+     Used by toString() and by ReportWriter, which reuses one builder and one formatter for a whole report.
+     @param row the builder the representation is appended to.
+     @param formatter the currency formatter for the balance.
+     */
+    public void appendTo(StringBuilder row, DecimalFormat formatter) {
+        appendTo(row, formatter, word());
+    }
+
+    /**
+     abstract declaration to append the custom string representation of an account as it was in a given state,
+     so a report can be written from state captured under the database's locks after they are released.
+     @param row the builder the representation is appended to.
+     @param formatter the currency formatter for the balance.
+     @param word a state word read by word().
+     */
+    abstract void appendTo(StringBuilder row, DecimalFormat formatter, long word);
+
+    /**
+     Appends the holder's name, date of birth and a given balance, the part every account type's representation shares.
+     @param row the builder to append to.
+     @param formatter the currency formatter for the balance.
+     @param balanceCents the balance to show, in cents.
+     */
+    protected void appendHolderAndBalance(StringBuilder row, DecimalFormat formatter, long balanceCents) {
+        Date dob = holder.getDOB();
+        row.append(holder.getFname()).append(' ').append(holder.getLname()).append(' ')
+                .append(dob.getMonth()).append('/').append(dob.getDay()).append('/').append(dob.getYear())
+                .append("::Balance ").append(formatter.format(Money.toDollars(balanceCents)));
+    }
+
+    /**
+     abstract declaration for the kind of account, used to sort and look up accounts by account type.
+     @return the AccountKind of the concrete account class.
+     */
+    public abstract AccountKind getKind();
+
+    /**
+     Compares two accounts by account kind first, then by holder profile.
+     Kinds are ordered Checking, College Checking, Money Market, Savings.
      @param obj which is the other account obj which is participating in the comparison.
-     @return a int that represents the comparison between various attributes of each account object.
+     @return a int that represents the comparison between the kinds, or the holders of the same kind.
      */
-    public abstract int compareTo(Account obj);
+    @Override
+    public int compareTo(Account obj) {
+        int kindCompare = this.getKind().compareTo(obj.getKind());
+        if (kindCompare != 0) {
+            return kindCompare;
+        }
+        return this.holder.compareTo(obj.holder);
+    }
 }
@@ -0,0 +1,335 @@
+package rubank;
+
+import rubank.Account;
+import rubank.AccountKind;
+import rubank.MoneyMarket;
+import rubank.RateTable;
+import rubank.Savings;
+
+/**
+ * Columnar (struct-of-arrays) copy of a set of accounts for month-end batch runs.
+ * Balance, kind, loyalty and withdrawal count each live in their own primitive array,
+ * with the Account objects (and so their Profiles) kept to the side for writing results back.
+ * Rows are grouped by account kind, so the fee and interest passes are one tight loop per kind
+ * with no instanceof checks or virtual calls. The passes read the RateTable installed when the columns
+ * were captured, or the one given to capture(), so a table installed during a run does not split it between
+ * two sets of rates.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public class AccountColumns {
+    private static final AccountKind[] KINDS = AccountKind.values();
+
+    private final Account[] owners; // the captured accounts, one per row
+    private final byte[] kind; // AccountKind ordinal of each row
+    private final long[] balance; // balance of each row, in cents
+    private final boolean[] loyal; // loyal customer status of each row; false for checking
+    private final int[] withdrawals; // withdrawals this month of each row; 0 unless money market
+    private final long[] captured; // state word of each row's account when it was captured
+    private final long[] fee; // monthly fee of each row, in cents, after computeMonthEnd()
+    private final long[] interest; // monthly interest of each row, in cents, after computeMonthEnd()
+    private final int[] rowOf; // row of each captured array index
+    private final int[] kindStart; // rows of kind k are kindStart[k] to kindStart[k + 1] - 1
+    private final int size; // number of rows
+    private final RateTable rates; // fee and interest rules of this run
+
+    /**
+     * Creates empty columns with room for the given number of rows.
+     * @param size The number of rows.
+     * @param rates The fee and interest rules to compute with.
+     */
+    private AccountColumns(int size, RateTable rates) {
+        this.size = size;
+        this.rates = rates;
+        owners = new Account[size];
+        kind = new byte[size];
+        balance = new long[size];
+        loyal = new boolean[size];
+        withdrawals = new int[size];
+        captured = new long[size];
+        fee = new long[size];
+        interest = new long[size];
+        rowOf = new int[size];
+        kindStart = new int[KINDS.length + 1];
+    }
+
+    /**
+     * Copies accounts into columns, grouped by account kind with a counting sort.
+     * Within a kind the rows keep the order of the given array. Reading the array in storage order
+     * rather than walking the sorted view keeps the capture close to sequential memory access.
+     * @param accounts The accounts to be captured.
+     * @param count The number of accounts at the start of the array to capture.
+     * @return The columns holding the accounts' current state.
+     */
+    public static AccountColumns capture(Account[] accounts, int count) {
+        return capture(accounts, count, RateTable.current());
+    }
+
+    /**
+     * Copies accounts into columns that compute with a given rate table rather than the installed one,
+     * such as the table a journaled month-end ran with.
+     * @param accounts The accounts to be captured.
+     * @param count The number of accounts at the start of the array to capture.
+     * @param rates The fee and interest rules to compute with.
+     * @return The columns holding the accounts' current state.
+     */
+    public static AccountColumns capture(Account[] accounts, int count, RateTable rates) {
+        AccountColumns columns = new AccountColumns(count, rates);
+        int[] start = columns.kindStart;
+        for (int i = 0; i < count; i++) {
+            start[accounts[i].getKind().ordinal() + 1]++;
+        }
+        for (int k = 1; k < start.length; k++) {
+            start[k] += start[k - 1];
+        }
+        int[] fill = start.clone();
+        for (int i = 0; i < count; i++) {
+            int row = fill[accounts[i].getKind().ordinal()]++;
+            columns.rowOf[i] = row;
+            columns.load(row, accounts[i]);
+        }
+        return columns;
+    }
+
+    /**
+     * Copies one account's state into a row, from a single read of its state word.
+     * @param row The row to be filled.
+     * @param account The account to be copied.
+     */
+    private void load(int row, Account account) {
+        long word = account.word();
+        owners[row] = account;
+        kind[row] = (byte) account.getKind().ordinal();
+        captured[row] = word;
+        if (account instanceof MoneyMarket) {
+            balance[row] = MoneyMarket.balanceOf(word);
+            loyal[row] = MoneyMarket.loyalOf(word);
+            withdrawals[row] = MoneyMarket.withdrawalsOf(word);
+        }
+        else {
+            balance[row] = word;
+            if (account instanceof Savings acc) {
+                loyal[row] = acc.getLoyalty();
+            }
+        }
+    }
+
+    /**
+     * Basic getter for the number of rows.
+     * @return The number of captured accounts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds the row an account was captured into.
+     * @param index The account's index in the array given to capture().
+     * @return The row.
+     */
+    public int rowOf(int index) {
+        return rowOf[index];
+    }
+
+    /**
+     * Basic getter for the account captured in a row.
+     * @param row The row.
+     * @return The Account of that row.
+     */
+    public Account account(int row) {
+        return owners[row];
+    }
+
+    /**
+     * Basic getter for the state word a row was captured from, for writing the row as it was captured.
+     * @param row The row.
+     * @return The account's state word when it was captured.
+     */
+    long word(int row) {
+        return captured[row];
+    }
+
+    /**
+     * Basic getter for the kind of a row.
+     * @param row The row.
+     * @return The AccountKind of that row.
+     */
+    public AccountKind kind(int row) {
+        return KINDS[kind[row]];
+    }
+
+    /**
+     * Basic getter for the balance of a row.
+     * @param row The row.
+     * @return The balance in cents.
+     */
+    public long balance(int row) {
+        return balance[row];
+    }
+
+    /**
+     * Basic getter for the loyal customer status of a row.
+     * @param row The row.
+     * @return true if loyal; always false for checking.
+     */
+    public boolean loyal(int row) {
+        return loyal[row];
+    }
+
+    /**
+     * Basic getter for the withdrawals this month of a row.
+     * @param row The row.
+     * @return The withdrawal count; always 0 unless money market.
+     */
+    public int withdrawals(int row) {
+        return withdrawals[row];
+    }
+
+    /**
+     * Basic getter for the first row of a kind; the rows of a kind are contiguous.
+     * @param kind The account kind.
+     * @return The first row of that kind, or the first row of the next kind if there are none.
+     */
+    public int kindStart(AccountKind kind) {
+        return kindStart[kind.ordinal()];
+    }
+
+    /**
+     * Basic getter for the rate table the columns were captured with.
+     * @return The RateTable used by computeMonthEnd().
+     */
+    public RateTable rates() {
+        return rates;
+    }
+
+    /**
+     * Basic getter for the fee computed for a row by computeMonthEnd().
+     * @param row The row.
+     * @return The monthly fee in cents.
+     */
+    public long fee(int row) {
+        return fee[row];
+    }
+
+    /**
+     * Basic getter for the interest computed for a row by computeMonthEnd().
+     * @param row The row.
+     * @return The monthly interest in cents.
+     */
+    public long interest(int row) {
+        return interest[row];
+    }
+
+    /**
+     * Computes the monthly fee and interest of every row from the current balances.
+     */
+    public void computeMonthEnd() {
+        computeMonthEnd(0, size);
+    }
+
+    /**
+     * Computes the monthly fee and interest of a range of rows from the current balances.
+     * Rows are independent, so separate ranges can be computed at the same time.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     */
+    public void computeMonthEnd(int from, int to) {
+        for (AccountKind k : KINDS) {
+            int start = Math.max(from, kindStart[k.ordinal()]);
+            int end = Math.min(to, kindStart[k.ordinal() + 1]);
+            if (start >= end) {
+                continue;
+            }
+            RateTable.Product product = rates.product(k);
+            switch (k) {
+                case CHECKING, COLLEGE_CHECKING -> checkingPass(product, start, end);
+                case MONEY_MARKET -> moneyMarketPass(product, start, end);
+                case SAVINGS -> savingsPass(product, start, end);
+            }
+        }
+    }
+
+    /**
+     * Applies the computed fee and interest to the balances of a range of rows and resets their withdrawals.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     */
+    public void applyMonthEnd(int from, int to) {
+        for (int i = from; i < to; i++) {
+            balance[i] = balance[i] - fee[i] + interest[i];
+            withdrawals[i] = 0;
+        }
+    }
+
+    /**
+     * Applies the computed fee and interest to the balances of every row and resets their withdrawals.
+     */
+    public void applyMonthEnd() {
+        applyMonthEnd(0, size);
+    }
+
+    /**
+     * Copies the balances and withdrawal counts of every row back to the captured accounts.
+     */
+    public void writeBack() {
+        writeBack(0, size);
+    }
+
+    /**
+     * Copies the balances and withdrawal counts of a range of rows back to the captured accounts.
+     * Each row is stored with a compare-and-set against the state captured for it; if a transaction
+     * changed the account since then, the month end is applied again to the account's current state with
+     * this run's rate table, so the transaction is neither lost nor charged twice.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     */
+    public void writeBack(int from, int to) {
+        for (int i = from; i < to; i++) {
+            Account account = owners[i];
+            long next = account instanceof MoneyMarket
+                    ? MoneyMarket.pack(balance[i], withdrawals[i], loyal[i])
+                    : balance[i];
+            if (!account.compareAndSetWord(captured[i], next)) {
+                account.applyMonthEndAtomically(rates);
+            }
+        }
+    }
+
+    /**
+     * Fee and interest pass over Checking or College Checking rows, which have no loyalty or withdrawal rules.
+     * @param product The rules of the rows' kind.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     */
+    private void checkingPass(RateTable.Product product, int from, int to) {
+        for (int i = from; i < to; i++) {
+            fee[i] = product.feeCents(balance[i], 0);
+            interest[i] = product.interestCents(balance[i], false);
+        }
+    }
+
+    /**
+     * Fee and interest pass over Money Market rows.
+     * @param product The Money Market rules.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     */
+    private void moneyMarketPass(RateTable.Product product, int from, int to) {
+        for (int i = from; i < to; i++) {
+            fee[i] = product.feeCents(balance[i], withdrawals[i]);
+            interest[i] = product.interestCents(balance[i], loyal[i]);
+        }
+    }
+
+    /**
+     * Fee and interest pass over Savings rows.
+     * @param product The Savings rules.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     */
+    private void savingsPass(RateTable.Product product, int from, int to) {
+        for (int i = from; i < to; i++) {
+            fee[i] = product.feeCents(balance[i], 0);
+            interest[i] = product.interestCents(balance[i], loyal[i]);
+        }
+    }
+}
@@ -1,15 +1,41 @@
+package rubank;
+
 import rubank.Account;
-import rubank.Checking;
-import rubank.CollegeChecking;
-import rubank.MoneyMarket;
-import rubank.Savings;
+import rubank.AccountKind;
 
-import java.text.DecimalFormat;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Holds a list of Account objects to form an account database.
  * Contains an accounts array as well as a number of accounts tracker.
- * Size of the accounts array can increase if needed but not decrease.
+ * Size of the accounts array doubles when it is full but does not decrease.
+ * A database made with new is used by one thread at a time. A database made with concurrent() can be
+ * shared: lookups take no lock, deposits and withdrawals lock one of a set of striped locks picked by
+ * account identity, and open, close, month-end and the reports hold the structure lock and every stripe,
+ * so they never see half of a transaction.
+ * A database made with lockFree() takes no lock for deposits and withdrawals at all: each one is a
+ * compare-and-set loop on the account's balance, and month-end re-applies itself to any account that
+ * changed while it ran. Open and close still hold the structure lock.
+ * A database with an AccountJournal attached appends every change to the journal while holding the lock
+ * that orders it, and returns only once the journal has it on disk.
  @author Dany Chucri, Madhur Nutulapati
  */
 
@@ -18,59 +44,424 @@ public class AccountDatabase {
 
     private int numAcct; // number of accounts in the array
 
+    private final Map<AccountKey, Account> index; // accounts keyed by account type and holder
+
+    private TreeSet<Account> sorted; // accounts ordered by account type, then profile
+
     private static final int baseSize = 4;
 
-    private static final int NOT_FOUND = -1;
+    private static final MonthEndEngine monthEndEngine = new MonthEndEngine(); // runs UB on the common pool
+
+    private static final ProjectionEngine projectionEngine = new ProjectionEngine(); // runs projections on the common pool
+
+    private static final AccountKind[] KINDS = AccountKind.values();
+
+    private static final int STRIPES_PER_CORE = 4;
+
+    private static final ThreadLocal<LookupKey> LOOKUPS = ThreadLocal.withInitial(LookupKey::new);
+
+    private static final Lock NO_LOCK = new NoLock();
+
+    private final LookupKey lookup; // reused by every index lookup, or null when each thread has its own
+
+    private final Lock structure; // held by open, close, month-end and reports
+
+    private final Lock[] stripes; // one is held while an account's balance is changed
+
+    private final Mode mode; // how the database is shared between threads
+
+    private AccountJournal journal; // changes are appended here before they are acknowledged, or null
+
+    /**
+     * How a database is shared between threads.
+     */
+    private enum Mode {
+        SINGLE_THREADED, // one thread at a time, no locks
+        STRIPED, // transactions lock a stripe, everything else locks it all
+        LOCK_FREE // transactions compare-and-set the balance, open and close lock the structure
+    }
+
+    /**
+     * Outcome of a deposit or withdrawal looked up by account type and holder.
+     */
+    public enum Outcome {
+        DONE, // the balance was updated
+        NOT_FOUND, // the holder has no account of that type
+        INSUFFICIENT_FUNDS // the withdrawal is larger than the balance
+    }
+
+    /**
+     * Hash key identifying an account by its account type and holder, the same fields compareTo() looks at.
+     */
+    private static final class AccountKey {
+        private final AccountKind kind; // the kind of account
+        private final Profile holder; // the profile of the account holder
+        private final int hash;
+
+        AccountKey(AccountKind kind, Profile holder) {
+            this.kind = kind;
+            this.holder = holder;
+            this.hash = keyHash(kind, holder.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof AccountKey other)) {
+                return false;
+            }
+            return this.kind == other.kind && this.holder.equals(other.holder);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Mutable probe for the index, holding an account type and either a Profile or names and a packed
+     * date of birth, so accounts can be found without building a key or any other object.
+     * It hashes like the AccountKey it matches, and only ever appears as the argument of a
+     * HashMap lookup, which is the side equals() is called on.
+     */
+    private static final class LookupKey {
+        private AccountKind kind;
+        private Profile holder; // the holder, or null to match the names and date of birth below
+        private CharSequence fname;
+        private CharSequence lname;
+        private int dob; // packed by Date.pack()
+        private int hash;
+
+        LookupKey set(AccountKind kind, CharSequence fname, CharSequence lname, int dob) {
+            this.kind = kind;
+            this.holder = null;
+            this.fname = fname;
+            this.lname = lname;
+            this.dob = dob;
+            this.hash = keyHash(kind, Profile.hash(fname, lname, dob));
+            return this;
+        }
+
+        LookupKey set(AccountKind kind, Profile holder) {
+            this.kind = kind;
+            this.holder = holder;
+            this.fname = null;
+            this.lname = null;
+            this.hash = keyHash(kind, holder.hashCode());
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof AccountKey key) || key.kind != kind) {
+                return false;
+            }
+            return holder != null ? key.holder.equals(holder) : key.holder.matches(fname, lname, dob);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
 
     /**
      Creates an instance of Account Database and initialize numAcct to 0.
      */
     public AccountDatabase() {
-        accounts = new Account[baseSize];
+        this(baseSize);
+    }
+
+    /**
+     Creates an instance of Account Database sized for an expected number of accounts.
+     Avoids growing the accounts array and the index while a known number of accounts is loaded.
+     @param expectedAccounts The number of accounts the database is expected to hold.
+     */
+    public AccountDatabase(int expectedAccounts) {
+        this(expectedAccounts, Mode.SINGLE_THREADED);
+    }
+
+    /**
+     Creates an instance of Account Database that can be used by many threads at once.
+     Deposits and withdrawals on different accounts run in parallel; open, close, month-end and
+     the reports wait for the transactions in flight and run one at a time.
+     @param expectedAccounts The number of accounts the database is expected to hold.
+     @return The thread-safe database.
+     */
+    public static AccountDatabase concurrent(int expectedAccounts) {
+        return new AccountDatabase(expectedAccounts, Mode.STRIPED);
+    }
+
+    /**
+     Creates an instance of Account Database whose deposits and withdrawals take no lock.
+     Each transaction is one compare-and-set retry loop on the account, so transactions on the same
+     account never wait for each other. Reports run alongside transactions and may show a mix of
+     balances from before and after them. A transaction that races a close may still apply, as if it
+     ran just before the close.
+     @param expectedAccounts The number of accounts the database is expected to hold.
+     @return The thread-safe database.
+     */
+    public static AccountDatabase lockFree(int expectedAccounts) {
+        return new AccountDatabase(expectedAccounts, Mode.LOCK_FREE);
+    }
+
+    /**
+     Creates an instance of Account Database.
+     @param expectedAccounts The number of accounts the database is expected to hold.
+     @param mode How the database is shared between threads.
+     */
+    private AccountDatabase(int expectedAccounts, Mode mode) {
+        if (expectedAccounts < 0) {
+            throw new IllegalArgumentException("Expected number of accounts cannot be negative: " + expectedAccounts);
+        }
+        accounts = new Account[Math.max(expectedAccounts, baseSize)];
         numAcct = 0;
+        int indexCapacity = Math.max(expectedAccounts, baseSize) * 4 / 3 + 1;
+        sorted = new TreeSet<>(Account.BY_KIND_AND_HOLDER);
+        this.mode = mode;
+        if (mode == Mode.SINGLE_THREADED) {
+            index = new HashMap<>(indexCapacity);
+            lookup = new LookupKey();
+            structure = NO_LOCK;
+            stripes = new Lock[] {NO_LOCK};
+            return;
+        }
+        index = new ConcurrentHashMap<>(indexCapacity);
+        lookup = null;
+        structure = new ReentrantLock();
+        if (mode == Mode.LOCK_FREE) {
+            stripes = new Lock[] {NO_LOCK};
+            return;
+        }
+        stripes = new Lock[Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * STRIPES_PER_CORE - 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * The lookup key for the calling thread.
+     * @return The shared key, or the calling thread's own key in a concurrent database.
+     */
+    private LookupKey lookup() {
+        return lookup != null ? lookup : LOOKUPS.get();
+    }
+
+    /**
+     * Journals every change from now on. Called by AccountJournal.open() once the journal has been replayed,
+     * before the database is shared.
+     * @param journal The journal to append changes to.
+     * @throws IllegalStateException if this is a lockFree() database, whose transactions take no lock
+     *                               the journal order could follow, or a journal is already attached.
+     */
+    void attach(AccountJournal journal) {
+        if (mode == Mode.LOCK_FREE) {
+            throw new IllegalStateException("A lock-free database cannot be journaled");
+        }
+        if (this.journal != null) {
+            throw new IllegalStateException("The database already has a journal");
+        }
+        this.journal = journal;
+    }
+
+    /**
+     * Waits for a journaled change to reach the disk. Called after the locks ordering the change are released,
+     * so concurrent changes share one force.
+     * @param entry The sequence number of the change's journal record, or AccountJournal.NONE.
+     */
+    private void sync(long entry) {
+        if (journal != null) {
+            journal.sync(entry);
+        }
+    }
+
+    /**
+     * Picks the stripe that guards an account's balance.
+     * @param account A stored account.
+     * @return The lock to hold while the balance changes.
+     */
+    private Lock stripeOf(Account account) {
+        int hash = System.identityHashCode(account);
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Takes the structure lock and then every stripe, in order, so no transaction is in flight.
+     */
+    private void lockAll() {
+        structure.lock();
+        for (Lock stripe : stripes) {
+            stripe.lock();
+        }
+    }
+
+    /**
+     * Releases the locks taken by lockAll().
+     */
+    private void unlockAll() {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            stripes[i].unlock();
+        }
+        structure.unlock();
+    }
+
+    /**
+     * Lock for a database used by one thread at a time, and for the stripes of a lock-free one; every method
+     * does nothing. It stands in for a real lock only at the lock() and unlock() calls in this class, so
+     * lockAll() and the stripe transactions need no branch per mode. Nothing may wait on a condition of it:
+     * newCondition() is never called here, and a NoLock is never handed out of this class.
+     */
+    private static final class NoLock implements Lock {
+        @Override
+        public void lock() {
+        }
+
+        @Override
+        public void lockInterruptibly() {
+        }
+
+        @Override
+        public boolean tryLock() {
+            return true;
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public void unlock() {
+        }
+
+        /**
+         * A condition needs a real lock to wait on, and nothing in AccountDatabase waits.
+         * @throws UnsupportedOperationException always.
+         */
+        @Override
+        public Condition newCondition() {
+            throw new UnsupportedOperationException("NoLock has no conditions");
+        }
+    }
+
+    /**
+     * Builds the index key for a given account.
+     * @param account The account to build the key for.
+     * @return The key of the account's type and holder.
+     */
+    private static AccountKey keyOf(Account account) {
+        return new AccountKey(account.getKind(), account.getHolder());
+    }
+
+    /**
+     * Combines the hashes of an account type and a holder into the hash of their index key.
+     * @param kind The kind of account.
+     * @param holderHash The hash code of the holder's Profile.
+     * @return The hash of the key.
+     */
+    private static int keyHash(AccountKind kind, int holderHash) {
+        return 31 * holderHash + kind.ordinal();
+    }
+
+    /**
+     * Searches for an account by account type and holder, without building a Profile or an Account.
+     * @param kind The kind of account.
+     * @param fname First name of the holder, matched ignoring case.
+     * @param lname Last name of the holder, matched ignoring case.
+     * @param dob Date of birth of the holder, packed by Date.pack().
+     * @return The Account stored in the AccountDatabase, or null if it is not there.
+     */
+    private Account find(AccountKind kind, CharSequence fname, CharSequence lname, int dob) {
+        return index.get(lookup().set(kind, fname, lname, dob));
     }
 
     /**
      * Searches for a specified account object in the list.
-     * Uses the criterion specified in account's compareTo() method.
+     * Uses the account type and holder index, so the lookup does not scan the array.
      * @param account The account to be searched for.
-     * @return An integer representing the position of the Account in the AccountDatabase.
+     * @return The Account stored in the AccountDatabase, or null if it is not there.
      */
-    private int find(Account account) {
-        for (int i = 0; i < numAcct; i++) {
-            if (accounts[i].compareTo(account) == 0) {
-                return i;
-            }
-        }
-        return NOT_FOUND;
+    private Account find(Account account) {
+        return index.get(lookup().set(account.getKind(), account.getHolder()));
     }
 
     /**
      * Searches for a specified account object in the list.
-     * Uses the criterion specified in account's compareTo() method.
-     * Specifically for opening an account
+     * Specifically for opening an account: a holder can only have one of Checking or College Checking.
      * @param account The account to be searched for.
      * @return true if its found; false for not found.
      */
     private boolean openFind(Account account) {
-        for (int i = 0; i < numAcct; i++) {
-            if (accounts[i].toString().substring(0, 1).compareTo(account.toString().substring(0, 1)) == 0) {
-                if (accounts[i].getHolder().compareTo(account.getHolder()) == 0) return true;
+        if (find(account) != null) {
+            return true;
+        }
+        AccountKind kind = account.getKind();
+        for (AccountKind other : KINDS) {
+            if (other != kind && other.openGroup() == kind.openGroup()
+                    && index.containsKey(lookup().set(other, account.getHolder()))) {
+                return true;
             }
         }
         return false;
     }
 
     /**
-     * Increases the capacity of the Accounts array by adding 4 account slots.
+     * Finds the Profile object the database already holds for a holder, so all of a holder's accounts
+     * share one Profile instead of each keeping its own copy.
+     * Only a Profile with the same spelling is shared, since each account prints the names it was opened with.
+     * @param holder The holder of an account being opened.
+     * @return The Profile of the holder's other accounts, or holder itself if it has none.
+     */
+    private Profile canonical(Profile holder) {
+        for (AccountKind kind : KINDS) {
+            Account other = index.get(lookup().set(kind, holder));
+            if (other != null) {
+                Profile shared = other.holder;
+                if (shared.getFname().equals(holder.getFname()) && shared.getLname().equals(holder.getLname())) {
+                    return shared;
+                }
+                return holder;
+            }
+        }
+        return holder;
+    }
+
+    /**
+     * Increases the capacity of the Accounts array by doubling it.
      */
     private void grow(){
-        Account[] moreAccounts = new Account[accounts.length + 4];
-        for (int i = 0; i < numAcct; i++) {
-            moreAccounts[i] = accounts[i];
+        ensureCapacity(accounts.length * 2);
+    } //double the capacity
+
+    /**
+     * Makes sure the Accounts array can hold at least the given number of accounts.
+     * Grows to the larger of double the current capacity and the requested capacity, so n opens copy O(n) slots in total.
+     * @param capacity The number of accounts the array must be able to hold.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity <= accounts.length) {
+            return;
         }
+        Account[] moreAccounts = new Account[Math.max(accounts.length * 2, capacity)];
+        System.arraycopy(accounts, 0, moreAccounts, 0, numAcct);
         accounts = moreAccounts;
-    } //increase the capacity by 4
+    }
+
+    /**
+     * Basic getter for the number of accounts, such as for sizing the progress of a report.
+     * @return The number of accounts in the database.
+     */
+    public int getNumAcct() {
+        structure.lock();
+        try {
+            return numAcct;
+        } finally {
+            structure.unlock();
+        }
+    }
 
     /**
      * Checks if the specified Account is already in the AccountDatabase.
@@ -78,229 +469,750 @@ public class AccountDatabase {
      * @return True if the Account is in the AccountDatabase, otherwise false.
      */
     public boolean contains(Account account){
-        for (int i = 0 ; i < numAcct; i++) {
-            if (accounts[i].compareTo(account) == 0) {
-                return true;
-            }
-        }
-        return false;
+        return find(account) != null;
     } //overload if necessary
 
+    /**
+     * Checks if the holder has an account of the given type.
+     * @param kind The kind of account.
+     * @param fname First name of the holder, matched ignoring case.
+     * @param lname Last name of the holder, matched ignoring case.
+     * @param dob Date of birth of the holder, packed by Date.pack().
+     * @return True if the Account is in the AccountDatabase, otherwise false.
+     */
+    public boolean contains(AccountKind kind, CharSequence fname, CharSequence lname, int dob) {
+        return find(kind, fname, lname, dob) != null;
+    }
+
     /**
      * Opens a given Account Object to the Accounts array of AccountDatabase.
      * @param account The account to be opened.
      * @return True if the account was opened, otherwise false.
      */
     public boolean open(Account account) {
-        if (numAcct == 0) {
-            accounts[0] = account;
-            numAcct++;
-            return true;
+        AccountEvents.Open event = new AccountEvents.Open();
+        event.begin();
+        boolean opened = openOne(account);
+        event.record(account.getKind(), account.getBalanceCents(), opened);
+        return opened;
+    } //add a new account
+
+    /**
+     * Opens one account, journaling it if there is a journal.
+     * @param account The account to be opened.
+     * @return True if the account was opened, otherwise false.
+     */
+    private boolean openOne(Account account) {
+        long entry = AccountJournal.NONE;
+        structure.lock();
+        try {
+            if (openFind(account)) {
+                return false;
+            }
+            if (journal != null) {
+                entry = journal.logOpen(account);
+            }
+            if (numAcct == accounts.length)
+                this.grow();
+            append(account);
+            sorted.add(account);
+        } finally {
+            structure.unlock();
         }
-        if (openFind(account)) {
-            return false;
+        sync(entry);
+        return true;
+    }
+
+    /**
+     * Opens a batch of accounts, such as a book loaded from a file.
+     * Capacity is reserved once, each account is checked against the index once,
+     * and when the batch is at least as large as the database the sorted view is rebuilt in one sort.
+     * @param batch The accounts to be opened, in order; later duplicates of earlier ones are rejected.
+     * @return The accounts that were not opened because the holder already has that account, in batch order.
+     */
+    public List<Account> openAll(Collection<Account> batch) {
+        List<Account> rejected;
+        long entry = AccountJournal.NONE;
+        structure.lock();
+        try {
+            rejected = openAllLocked(batch);
+            if (journal != null) {
+                entry = journal.lastAppended();
+            }
+        } finally {
+            structure.unlock();
         }
-        if (numAcct == accounts.length)
-            this.grow();
+        sync(entry);
+        return rejected;
+    }
+
+    /**
+     * Opens every account restored from an AccountSnapshot, or none of them if any is rejected. Into an empty,
+     * unjournaled database they are stored and indexed directly, without the shared-holder lookups open() makes,
+     * since the snapshot was taken from a valid database and its accounts already share one Profile per holder;
+     * an account the snapshot holds twice is still caught by the index, and the database is emptied again.
+     * The sorted view is then built with one parallel sort.
+     * Otherwise every account is checked against the index and the others first, and then they are opened
+     * as openAll() opens them.
+     * @param restored The restored accounts.
+     * @return The accounts that would be rejected because the holder already has that account; if there are
+     *         any, no account was opened.
+     */
+    List<Account> restoreAll(Account[] restored) {
+        structure.lock();
+        try {
+            List<Account> rejected = new ArrayList<>();
+            if (numAcct != 0 || journal != null) {
+                Set<AccountKey> keys = new HashSet<>();
+                for (Account account : restored) {
+                    AccountKey key = keyOf(account);
+                    if (index.containsKey(key) || !keys.add(key)) {
+                        rejected.add(account);
+                    }
+                }
+                if (!rejected.isEmpty()) {
+                    return rejected;
+                }
+                openAllLocked(Arrays.asList(restored));
+                if (journal != null) {
+                    sync(journal.lastAppended());
+                }
+                return rejected;
+            }
+            ensureCapacity(restored.length);
+            for (Account account : restored) {
+                if (index.putIfAbsent(keyOf(account), account) != null) {
+                    rejected.add(account);
+                    continue;
+                }
+                account.slot = numAcct;
+                accounts[numAcct++] = account;
+            }
+            if (!rejected.isEmpty()) {
+                for (int i = 0; i < numAcct; i++) {
+                    index.remove(keyOf(accounts[i]));
+                    accounts[i] = null;
+                }
+                numAcct = 0;
+                return rejected;
+            }
+            rebuildSortedView();
+            return rejected;
+        } finally {
+            structure.unlock();
+        }
+    }
+
+    /**
+     * Opens a batch of accounts while the structure lock is held.
+     * @param batch The accounts to be opened, in order.
+     * @return The accounts that were not opened, in batch order.
+     */
+    private List<Account> openAllLocked(Collection<Account> batch) {
+        List<Account> rejected = new ArrayList<>();
+        ensureCapacity(numAcct + batch.size());
+        int before = numAcct;
+        for (Account account : batch) {
+            if (openFind(account)) {
+                rejected.add(account);
+            }
+            else {
+                if (journal != null) {
+                    journal.logOpen(account);
+                }
+                append(account);
+            }
+        }
+        if (numAcct - before >= before) {
+            rebuildSortedView();
+        }
+        else {
+            for (int i = before; i < numAcct; i++) {
+                sorted.add(accounts[i]);
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Stores an account in the next free slot and indexes it. The caller makes sure there is room.
+     * The account's holder is replaced by the Profile the holder's other accounts already share.
+     * @param account The account to be stored.
+     */
+    private void append(Account account) {
+        account.holder = canonical(account.holder);
+        account.slot = numAcct;
         accounts[numAcct] = account;
         numAcct++;
-        return true;
-    } //add a new account
+        index.put(keyOf(account), account);
+    }
 
     /**
      * Closes/removes a specified Account Object from the accounts list.
+     * The last account in the array is moved into the freed slot, so nothing is shifted.
+     * Report order comes from the sorted view, not from the array.
      * @param account The account to be closed.
      * @return True if the account was closed, otherwise false.
      */
     public boolean close(Account account) {
-        int foundAccount = find(account);
-        if (foundAccount != NOT_FOUND) {
-            for(int j=foundAccount; j<numAcct-1;j++) {
-                accounts[j] = accounts[j+1];
+        AccountEvents.Close event = new AccountEvents.Close();
+        event.begin();
+        long entry;
+        structure.lock();
+        try {
+            Account found = index.get(lookup().set(account.getKind(), account.getHolder()));
+            if (found != null) {
+                entry = remove(found);
             }
-            numAcct--;
-            return true;
-        }
-        else{
-            return false;
+            else{
+                event.record(account.getKind(), false);
+                return false;
+            }
+        } finally {
+            structure.unlock();
         }
+        sync(entry);
+        event.record(account.getKind(), true);
+        return true;
     } //remove the given account
 
+    /**
+     * Closes the holder's account of the given type.
+     * @param kind The kind of account.
+     * @param fname First name of the holder, matched ignoring case.
+     * @param lname Last name of the holder, matched ignoring case.
+     * @param dob Date of birth of the holder, packed by Date.pack().
+     * @return True if the account was closed, otherwise false.
+     */
+    public boolean close(AccountKind kind, CharSequence fname, CharSequence lname, int dob) {
+        AccountEvents.Close event = new AccountEvents.Close();
+        event.begin();
+        long entry;
+        structure.lock();
+        try {
+            Account found = index.get(lookup().set(kind, fname, lname, dob));
+            if (found == null) {
+                event.record(kind, false);
+                return false;
+            }
+            entry = remove(found);
+        } finally {
+            structure.unlock();
+        }
+        sync(entry);
+        event.record(kind, true);
+        return true;
+    }
+
+    /**
+     * Removes a stored account from the index, the sorted view and the array. The caller holds the structure lock.
+     * The last account in the array is moved into the freed slot, so nothing is shifted.
+     * The close is journaled and the account's slot set to -1 under its stripe, so the close is journaled after
+     * any transaction that found the account before it, and such a transaction that has not run yet sees that
+     * it is gone. The close is journaled before anything is removed, so a journal that cannot take it leaves
+     * the account open.
+     * @param found The stored account.
+     * @return The sequence number of the close's journal record, or AccountJournal.NONE.
+     */
+    private long remove(Account found) {
+        long entry = AccountJournal.NONE;
+        int foundAccount = found.slot;
+        Lock stripe = stripeOf(found);
+        stripe.lock();
+        try {
+            if (journal != null) {
+                entry = journal.logClose(found);
+            }
+            found.slot = -1;
+        } finally {
+            stripe.unlock();
+        }
+        index.remove(keyOf(found));
+        sorted.remove(found);
+        Account last = accounts[--numAcct];
+        accounts[foundAccount] = last;
+        last.slot = foundAccount;
+        accounts[numAcct] = null;
+        return entry;
+    }
+
     /**
      * Withdraws a certain amount from a specified Account Object from the accounts list.
      * @param account The account to withdraw from.
      * @return True if the withdrawal operation happened successfully, otherwise false.
      */
     public boolean withdraw(Account account) {
-        int foundAccount = find(account);
-        if (foundAccount != NOT_FOUND) {
-            double newBalance = accounts[foundAccount].getBalance() - account.getBalance();
-            if (newBalance < 0) return false;
-            accounts[foundAccount].setBalance(newBalance);
-            if (accounts[foundAccount] instanceof MoneyMarket acc) {
-                    double mmBalance = acc.getBalance();
-                    if (mmBalance < 0) {
-                        acc.setBalance(acc.getBalance() + account.getBalance());
-                        return false;
-                    }
-                    else {
-                        acc.setBalance(mmBalance);
-                    }
-                if (newBalance < 2000 && (acc.getLoyalty())) {
-                    acc.setLoyalty(false);
-                }
-                acc.incWithdrawal();
-            }
-            return true;
+        Account found = find(account);
+        if (found != null) {
+            return withdraw(found, account.getBalanceCents()) == Outcome.DONE;
         }
         return false;
     }//false if insufficient fund
 
+    /**
+     * Withdraws an amount from the holder's account of the given type.
+     * @param kind The kind of account.
+     * @param fname First name of the holder, matched ignoring case.
+     * @param lname Last name of the holder, matched ignoring case.
+     * @param dob Date of birth of the holder, packed by Date.pack().
+     * @param amountCents The amount to withdraw, in cents.
+     * @return DONE, NOT_FOUND, or INSUFFICIENT_FUNDS if the balance was left unchanged.
+     */
+    public Outcome withdraw(AccountKind kind, CharSequence fname, CharSequence lname, int dob, long amountCents) {
+        AccountEvents.Withdraw event = new AccountEvents.Withdraw();
+        event.begin();
+        Account found = find(kind, fname, lname, dob);
+        Outcome outcome = found == null ? Outcome.NOT_FOUND : withdraw(found, amountCents);
+        event.record(kind, amountCents, outcome);
+        return outcome;
+    }
+
+    /**
+     * Withdraws from a stored account under its stripe. The account updates its own Money Market
+     * loyalty and withdrawal count in the same atomic step.
+     * With a journal the withdrawal is journaled before the balance changes: the stripe orders every change
+     * to a journaled account, so the balance checked first is the one withdrawn from, and a journal that
+     * cannot take the record leaves the balance alone.
+     * @param found The stored account.
+     * @param amountCents The amount to withdraw, in cents.
+     * @return DONE, NOT_FOUND if the account was closed after it was found, or INSUFFICIENT_FUNDS.
+     */
+    private Outcome withdraw(Account found, long amountCents) {
+        long entry = AccountJournal.NONE;
+        Lock stripe = stripeOf(found);
+        stripe.lock();
+        try {
+            if (found.slot < 0) return Outcome.NOT_FOUND;
+            if (journal != null) {
+                if (found.getBalanceCents() < amountCents) return Outcome.INSUFFICIENT_FUNDS;
+                entry = journal.logWithdraw(found, amountCents);
+            }
+            if (!found.withdrawCents(amountCents)) return Outcome.INSUFFICIENT_FUNDS;
+        } finally {
+            stripe.unlock();
+        }
+        sync(entry);
+        return Outcome.DONE;
+    }
+
     /**
      * responsible for processing a deposit into a specified account from the accounts list.
      * @param account The account to deposit into.
      */
     public void deposit(Account account) {
-        int foundAccount = find(account);
-        if (foundAccount != NOT_FOUND) {
-            double newBalance = accounts[foundAccount].getBalance() + account.getBalance();
-            accounts[foundAccount].setBalance(newBalance);
-            if (accounts[foundAccount] instanceof MoneyMarket acc) {
-                if (newBalance >= 2000 && !(acc.getLoyalty())) {
-                    acc.setLoyalty(true);
-                }
+        Account found = find(account);
+        if (found != null) {
+            deposit(found, account.getBalanceCents());
+        }
+    }
+
+    /**
+     * Deposits an amount into the holder's account of the given type.
+     * @param kind The kind of account.
+     * @param fname First name of the holder, matched ignoring case.
+     * @param lname Last name of the holder, matched ignoring case.
+     * @param dob Date of birth of the holder, packed by Date.pack().
+     * @param amountCents The amount to deposit, in cents.
+     * @return DONE, or NOT_FOUND if the holder has no such account.
+     */
+    public Outcome deposit(AccountKind kind, CharSequence fname, CharSequence lname, int dob, long amountCents) {
+        AccountEvents.Deposit event = new AccountEvents.Deposit();
+        event.begin();
+        Account found = find(kind, fname, lname, dob);
+        Outcome outcome = found == null ? Outcome.NOT_FOUND : deposit(found, amountCents);
+        event.record(kind, amountCents, outcome);
+        return outcome;
+    }
+
+    /**
+     * Deposits into a stored account under its stripe. The account restores its own Money Market
+     * loyalty once the balance is high enough.
+     * With a journal the deposit is journaled before the balance changes, once it is known not to overflow,
+     * so a journal that cannot take the record leaves the balance alone.
+     * @param found The stored account.
+     * @param amountCents The amount to deposit, in cents.
+     * @return DONE, or NOT_FOUND if the account was closed after it was found.
+     * @throws ArithmeticException if the balance would overflow.
+     */
+    private Outcome deposit(Account found, long amountCents) {
+        long entry = AccountJournal.NONE;
+        Lock stripe = stripeOf(found);
+        stripe.lock();
+        try {
+            if (found.slot < 0) return Outcome.NOT_FOUND;
+            if (journal != null) {
+                Math.addExact(found.getBalanceCents(), amountCents);
+                entry = journal.logDeposit(found, amountCents);
             }
+            found.depositCents(amountCents);
+        } finally {
+            stripe.unlock();
         }
+        sync(entry);
+        return Outcome.DONE;
     }
 
     /**
-     * Used to sort the AccountDatabase based off of Account Types.
-     * Utilizes a selection sort algorithm.
+     * Rebuilds the sorted view from the accounts array in one pass.
+     * Sorts a copy of the array with a parallel merge sort, O(n log n), and then builds the new view
+     * from the sorted run in O(n), since TreeSet builds its tree directly from a SortedSet with the same comparator.
+     * Used after bulk changes instead of updating the view one account at a time.
      */
-    private void selectionSortAccounts(){
-        for (int i = 0; i < numAcct - 1; i++){
-            int min = i;
-            for (int j = i + 1; j < numAcct; j++){
-                if (accounts[j].compareTo(accounts[min]) == 0) {
-                    if (accounts[j].getHolder().compareTo(accounts[min].getHolder()) < 0) {
-                        min = j;
-                    }
-                }
-                else if (accounts[j].compareTo(accounts[min]) < 0){
-                    min = j;
-                }
+    private void rebuildSortedView() {
+        AccountEvents.Sort event = new AccountEvents.Sort();
+        event.begin();
+        Account[] ordered = Arrays.copyOf(accounts, numAcct);
+        Arrays.parallelSort(ordered, Account.BY_KIND_AND_HOLDER);
+        TreeSet<Account> rebuilt = new TreeSet<>(Account.BY_KIND_AND_HOLDER);
+        rebuilt.addAll(new SortedRun(ordered));
+        sorted = rebuilt;
+        event.record(ordered.length);
+    }
+
+    /**
+     * Read-only SortedSet over a range of an array already sorted by Account.BY_KIND_AND_HOLDER, with no
+     * duplicates. Passing one to new TreeSet() or TreeSet.addAll() takes their linear-time path for sorted input.
+     * The range views are found by binary search and share the array.
+     */
+    private static class SortedRun extends AbstractSet<Account> implements SortedSet<Account> {
+        private final Account[] ordered;
+        private final int from; // first index, inclusive
+        private final int to; // last index, exclusive
+
+        SortedRun(Account[] ordered) {
+            this(ordered, 0, ordered.length);
+        }
+
+        private SortedRun(Account[] ordered, int from, int to) {
+            this.ordered = ordered;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Iterator<Account> iterator() {
+            return Arrays.asList(ordered).subList(from, to).iterator();
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Account account
+                    && Arrays.binarySearch(ordered, from, to, account, Account.BY_KIND_AND_HOLDER) >= 0;
+        }
+
+        @Override
+        public Comparator<? super Account> comparator() {
+            return Account.BY_KIND_AND_HOLDER;
+        }
+
+        @Override
+        public Account first() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return ordered[from];
+        }
+
+        @Override
+        public Account last() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return ordered[to - 1];
+        }
+
+        @Override
+        public SortedSet<Account> subSet(Account fromElement, Account toElement) {
+            if (Account.BY_KIND_AND_HOLDER.compare(fromElement, toElement) > 0) {
+                throw new IllegalArgumentException("fromElement is after toElement");
             }
-            Account minDateEvent = accounts[min];
-            accounts[min] = accounts[i];
-            accounts[i] = minDateEvent;
+            return new SortedRun(ordered, indexOf(fromElement), indexOf(toElement));
+        }
+
+        @Override
+        public SortedSet<Account> headSet(Account toElement) {
+            return new SortedRun(ordered, from, indexOf(toElement));
+        }
+
+        @Override
+        public SortedSet<Account> tailSet(Account fromElement) {
+            return new SortedRun(ordered, indexOf(fromElement), to);
+        }
+
+        /**
+         * Finds where an account is, or would be, in the range.
+         * @param account The account to look for.
+         * @return The index of the first element not less than the account.
+         */
+        private int indexOf(Account account) {
+            int index = Arrays.binarySearch(ordered, from, to, account, Account.BY_KIND_AND_HOLDER);
+            return index >= 0 ? index : -index - 1;
         }
     }
 
     /**
      * Prints out the accounts of the database, sorted by the account types.
-     * Calls selectionSortAccounts() method
+     * Iterates the sorted view, so no sorting is done here.
      */
     public void printSorted() {
-        selectionSortAccounts();
-        if (numAcct == 0){
-            System.out.println("Account Database is empty!");
-            return;
+        try (ReportWriter out = ReportWriter.toConsole()) {
+            printSorted(out);
         }
-        System.out.println("\n*Accounts sorted by account type and profile.");
-        for(int i = 0; i < numAcct; i++){
-            System.out.println(accounts[i]);
-        }
-        System.out.println("*end of list.\n");
     } // sort by account type and profile, then print
 
     /**
-     * responsible for calculating the monthly fee using instance of operator to determine account type
-     * calling monthly fee of respective account to calculate monthly fee.
-     * @param account The account.
-     * @return monthly fee for given account
+     * Writes the accounts of the database, sorted by the account types, to a report.
+     * @param out The report to write to, such as a file.
      */
-    private double calcMonthlyFee(Account account) {
-        if (account instanceof CollegeChecking acc) {
-            return acc.monthlyFee();
+    public void printSorted(ReportWriter out) {
+        lockAll();
+        try {
+            if (numAcct == 0){
+                out.line("Account Database is empty!");
+                return;
+            }
+            out.line("\n*Accounts sorted by account type and profile.");
+            for (Account account : sorted) {
+                out.account(account);
+            }
+            out.line("*end of list.\n");
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Responsible for displaying all account.
+     * Will also display the calculated fees and monthly interests based on current balances
+     */
+    public void printFeesAndInterests() {
+        try (ReportWriter out = ReportWriter.toConsole()) {
+            printFeesAndInterests(out);
         }
-        else if (account instanceof Checking acc) {
-            return acc.monthlyFee();
+    } //calculate interests/fees, then print
+
+    /**
+     * Writes all accounts with the calculated fees and monthly interests based on current balances to a report.
+     * The fees and interests are computed in one batch by AccountColumns from the installed RateTable.
+     * @param out The report to write to, such as a file.
+     */
+    public void printFeesAndInterests(ReportWriter out) {
+        lockAll();
+        try {
+            if (numAcct == 0){
+                out.line("Account Database is empty!");
+                return;
+            }
+            AccountColumns columns = AccountColumns.capture(accounts, numAcct);
+            columns.computeMonthEnd();
+            out.line("\n*list of accounts with fee and monthly interest");
+            for (Account account : sorted)
+            {
+                int row = columns.rowOf(account.slot);
+                out.accountWithFeeAndInterest(account, columns.fee(row), columns.interest(row));
+            }
+            out.line("*end of list.\n");
+        } finally {
+            unlockAll();
+        }
+    }
+
+    /**
+     * Applies one month of fees and interests to every account, without printing.
+     * The accounts are captured into AccountColumns and updated by the given engine in parallel partitions.
+     * The locks are released before waiting for the journal, so the force does not hold up transactions.
+     * @param engine The engine to run the update on.
+     * @return The number of accounts, elapsed time and parallelism of the run.
+     */
+    public MonthEndEngine.Result applyMonthEnd(MonthEndEngine engine) {
+        return applyMonthEnd(engine, RateTable.current());
+    }
+
+    /**
+     * Applies one month of fees and interests to every account with a given rate table, such as the one a
+     * journaled month-end ran with, without printing.
+     * @param engine The engine to run the update on.
+     * @param rates The fee and interest rules of the month-end.
+     * @return The number of accounts, elapsed time and parallelism of the run.
+     */
+    MonthEndEngine.Result applyMonthEnd(MonthEndEngine engine, RateTable rates) {
+        MonthEndRun run;
+        lockAll();
+        try {
+            run = runMonthEnd(engine, rates);
+        } finally {
+            unlockAll();
         }
-        else if (account instanceof MoneyMarket acc) {
-            return acc.monthlyFee();
+        sync(run.entry());
+        return run.result();
+    }
+
+    /**
+     * Outcome of the locked part of a month-end.
+     * @param result The number of accounts, elapsed time and parallelism of the run.
+     * @param entry The sequence number of the month-end's journal record, or AccountJournal.NONE.
+     */
+    private record MonthEndRun(MonthEndEngine.Result result, long entry) {
+    }
+
+    /**
+     * Journals the month-end with the rate table it runs with, then updates every account. The caller holds
+     * every lock, and waits for the journal entry only after releasing them. The record comes first, so a
+     * journal that cannot take it leaves every balance alone.
+     * @param engine The engine to run the update on.
+     * @param rates The fee and interest rules of the month-end.
+     * @return The result of the run and its journal entry.
+     */
+    private MonthEndRun runMonthEnd(MonthEndEngine engine, RateTable rates) {
+        long entry = AccountJournal.NONE;
+        if (journal != null) {
+            AccountEvents.MonthEnd log = new AccountEvents.MonthEnd();
+            log.begin();
+            entry = journal.logMonthEnd(rates);
+            log.record("journal", numAcct);
         }
-        else if (account instanceof Savings acc) {
-            return acc.monthlyFee();
+        AccountEvents.MonthEnd capture = new AccountEvents.MonthEnd();
+        capture.begin();
+        AccountColumns columns = AccountColumns.capture(accounts, numAcct, rates);
+        capture.record("capture", numAcct);
+        AccountEvents.MonthEnd update = new AccountEvents.MonthEnd();
+        update.begin();
+        MonthEndEngine.Result result = engine.run(columns);
+        update.record("update", numAcct);
+        return new MonthEndRun(result, entry);
+    }
+
+    /**
+     * Copies every account into an AccountSnapshot, which can then be written to disk without holding up the database.
+     * The copy is taken with every lock held, so it reflects a point between transactions; when a journal is
+     * attached the snapshot records the journal offset of that point.
+     * @return The copy of the accounts.
+     */
+    public AccountSnapshot snapshot() {
+        lockAll();
+        try {
+            return AccountSnapshot.capture(accounts, numAcct, journal != null ? journal.position() : 0);
+        } finally {
+            unlockAll();
         }
-        return 0;
     }
 
     /**
-     * responsible for calculating the monthly interest using instance of operator to determine account type
-     * calling monthlyInterest of respective account to calculate monthly interest.
-     * @param account The account.
-     * @return monthly interest for given account
+     * calculates and prints the updated balances of all accounts in the database after applying monthly fees and interests.
+     * The fees and interests are applied by applyMonthEnd() before the accounts are printed.
      */
-    private double calcMonthlyInterest(Account account) {
-        if (account instanceof CollegeChecking acc) {
-            return acc.monthlyInterest();
+    public void printUpdatedBalances() {
+        try (ReportWriter out = ReportWriter.toConsole()) {
+            printUpdatedBalances(out);
         }
-        else if (account instanceof Checking acc) {
-            return acc.monthlyInterest();
+    } //apply the interests/fees, then print
+
+    /**
+     * Applies monthly fees and interests to all accounts and writes the updated balances to a report.
+     * The update runs with every lock held, and the updated state of each account is read in sorted order
+     * before they are released. The journal force and the report, which may go to a slow client, come after.
+     * @param out The report to write to, such as a file.
+     */
+    public void printUpdatedBalances(ReportWriter out) {
+        Account[] rows; // accounts in the order of the sorted view
+        long[] words; // state word of each account after the update
+        long entry = AccountJournal.NONE;
+        lockAll();
+        try {
+            rows = new Account[numAcct];
+            words = new long[numAcct];
+            if (numAcct > 0) {
+                entry = runMonthEnd(monthEndEngine, RateTable.current()).entry();
+                int i = 0;
+                for (Account account : sorted) {
+                    rows[i] = account;
+                    words[i++] = account.word();
+                }
+            }
+        } finally {
+            unlockAll();
         }
-        else if (account instanceof MoneyMarket acc) {
-            return acc.monthlyInterest();
+        sync(entry);
+        if (rows.length == 0) {
+            out.line("Account Database is empty!");
+            return;
         }
-        else if (account instanceof Savings acc) {
-            return acc.monthlyInterest();
+        AccountEvents.MonthEnd report = new AccountEvents.MonthEnd();
+        report.begin();
+        out.line("\n*list of accounts with fees and interests applied.");
+        for (int i = 0; i < rows.length; i++) {
+            out.account(rows[i], words[i]);
         }
-        return 0;
+        out.line("*end of list.\n");
+        report.record("report", rows.length);
+    }
 
+    /**
+     * Projects every account's balance a number of months ahead, without changing any account.
+     * The accounts are copied into AccountColumns with every lock held, then projected by the given engine
+     * with no lock held, so transactions carry on while the projection runs.
+     * @param months The number of months, at least 1.
+     * @param engine The engine to run the projection on.
+     * @return The projected balances, by row of the captured columns.
+     */
+    public ProjectionEngine.Projection project(int months, ProjectionEngine engine) {
+        AccountColumns columns;
+        lockAll();
+        try {
+            columns = AccountColumns.capture(accounts, numAcct);
+        } finally {
+            unlockAll();
+        }
+        return engine.run(columns, months);
     }
 
     /**
-     * Responsible for displaying all account.
-     * Will also display the calculated fees and monthly interests based on current balances
+     * Responsible for displaying all accounts with their balances projected a number of months ahead.
+     * @param months The number of months, at least 1.
      */
-    public void printFeesAndInterests() {
-        selectionSortAccounts();
-        if (numAcct == 0){
-            System.out.println("Account Database is empty!");
-            return;
+    public void printProjectedBalances(int months) {
+        try (ReportWriter out = ReportWriter.toConsole()) {
+            printProjectedBalances(months, out);
         }
-        System.out.println("\n*list of accounts with fee and monthly interest");
-        for (int i = 0; i < numAcct; i++)
-        {
-            double fee = calcMonthlyFee(accounts[i]);
-            double interest = calcMonthlyInterest(accounts[i]);
-            DecimalFormat formatter = (DecimalFormat) DecimalFormat.getCurrencyInstance();
-            String feeString = formatter.format(fee);
-            String interestString = formatter.format(interest);
-            System.out.println(accounts[i] + "::fee " + feeString + "::monthly interest " + interestString);
-        }
-        System.out.println("*end of list.\n");
-    } //calculate interests/fees, then print
+    }
 
     /**
-     * calculates and prints the updated balances of all accounts in the database after applying monthly fees and interests.
+     * Writes all accounts with their balances, fees and interest projected a number of months ahead to a report.
+     * The accounts and their sorted order are copied with every lock held; the projection and the report run after
+     * the locks are released, so the live balances are neither changed nor held up. Each row shows the account as
+     * it was copied, followed by its projection from the copy.
+     * @param months The number of months, at least 1.
+     * @param out The report to write to, such as a file.
      */
-    public void printUpdatedBalances() {
-        selectionSortAccounts();
-        if (numAcct == 0){
-            System.out.println("Account Database is empty!");
+    public void printProjectedBalances(int months, ReportWriter out) {
+        AccountColumns columns;
+        int[] order; // rows in the order of the sorted view
+        lockAll();
+        try {
+            columns = AccountColumns.capture(accounts, numAcct);
+            order = new int[numAcct];
+            int i = 0;
+            for (Account account : sorted) {
+                order[i++] = columns.rowOf(account.slot);
+            }
+        } finally {
+            unlockAll();
+        }
+        if (order.length == 0) {
+            out.line("Account Database is empty!");
             return;
         }
-        System.out.println("\n*list of accounts with fees and interests applied.");
-        for (int i = 0; i < numAcct; i++)
-        {
-            double fee = calcMonthlyFee(accounts[i]);
-            double interest = calcMonthlyInterest(accounts[i]);
-            accounts[i].setBalance(accounts[i].getBalance() - fee + interest);
-            if (accounts[i] instanceof MoneyMarket acc) {
-                acc.setWithdrawal(0);
-            }
-            System.out.println(accounts[i]);
+        ProjectionEngine.Projection projection = projectionEngine.run(columns, months);
+        out.line("\n*list of accounts with balances projected " + months + " months ahead.");
+        for (int row : order) {
+            out.accountWithProjection(columns.account(row), columns.word(row), projection.balance(row),
+                    projection.fees(row), projection.interest(row));
         }
-        System.out.println("*end of list.\n");
-    } //apply the interests/fees, then print
+        out.line("*end of list.\n");
+    }
 }
\ No newline at end of file
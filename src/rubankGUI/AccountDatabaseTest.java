@@ -1,10 +1,50 @@
+package rubank;
+
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import src.rubank.TransactionManager;
+import rubank.Account;
+import rubank.AccountColumns;
 import rubank.AccountDatabase;
+import rubank.AccountJournal;
+import rubank.AccountKind;
+import rubank.AccountLoader;
+import rubank.AccountSnapshot;
+import rubank.Campus;
 import rubank.Checking;
+import rubank.CollegeChecking;
 import rubank.Date;
+import rubank.MonthEndEngine;
+import rubank.MoneyMarket;
 import rubank.Profile;
+import rubank.ProjectionEngine;
+import rubank.RateTable;
+import rubank.ReportWriter;
+import rubank.Savings;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ForkJoinPool;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -22,4 +62,566 @@ class AccountDatabaseTest {
         database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
         assertTrue(database.close(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void close_Matches_Holder_Names_Ignoring_Case() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        assertTrue(database.close(new Checking(new Profile("JOHN", "winthrop", new Date("1/12/1588")), 0)));
+        assertFalse(database.contains(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 0)));
+    }
+
+    @Test
+    void open_College_Checking_When_Holder_Has_Checking() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        assertFalse(database.open(new CollegeChecking(new Profile("John", "Winthrop", new Date("01/12/1588")), 100, Campus.NEWARK)));
+    }
+
+    @Test
+    void close_First_Account_Keeps_The_Others() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        database.open(new Checking(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100));
+        database.open(new Checking(new Profile("Roger", "Williams", new Date("12/21/1603")), 200));
+        assertTrue(database.close(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 0)));
+        assertTrue(database.close(new Checking(new Profile("Roger", "Williams", new Date("12/21/1603")), 0)));
+        assertTrue(database.contains(new Checking(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 0)));
+    }
+
+    @Test
+    void open_All_Rejects_Duplicates_In_The_Batch() {
+        AccountDatabase database = new AccountDatabase(2);
+        Account first = new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000);
+        Account second = new Checking(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100);
+        Account duplicate = new Checking(new Profile("john", "WINTHROP", new Date("01/12/1588")), 1);
+        List<Account> rejected = database.openAll(List.of(first, second, duplicate));
+        assertEquals(List.of(duplicate), rejected);
+        assertTrue(database.contains(second));
+    }
+
+    @Test
+    void withdraw_Entire_Balance_In_Fractional_Amounts() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 0.3));
+        assertTrue(database.withdraw(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 0.1)));
+        assertTrue(database.withdraw(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 0.2)));
+    }
+
+    @Test
+    void print_Sorted_To_A_Report_Orders_By_Type_Then_Profile() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100, false));
+        database.open(new Checking(new Profile("Roger", "Williams", new Date("12/21/1603")), 200));
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        StringWriter report = new StringWriter();
+        try (ReportWriter out = ReportWriter.to(report)) {
+            database.printSorted(out);
+        }
+        String[] lines = report.toString().split(System.lineSeparator());
+        assertTrue(lines[2].startsWith("Checking::Roger Williams 12/21/1603::Balance "));
+        assertTrue(lines[3].startsWith("Checking::John Winthrop 1/12/1588::Balance "));
+        assertTrue(lines[4].startsWith("Savings::Anne Hutchinson 7/20/1591::Balance "));
+    }
+
+    @Test
+    void deposit_By_Key_Matches_Holder_Names_Ignoring_Case() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 100));
+        int dob = Date.parsePacked("1/12/1588");
+        assertEquals(AccountDatabase.Outcome.DONE,
+                database.deposit(AccountKind.CHECKING, "JOHN", "winthrop", dob, 50));
+        assertEquals(AccountDatabase.Outcome.NOT_FOUND,
+                database.deposit(AccountKind.SAVINGS, "John", "Winthrop", dob, 50));
+        assertEquals(AccountDatabase.Outcome.DONE,
+                database.withdraw(AccountKind.CHECKING, "John", "Winthrop", dob, 10_050));
+    }
+
+    @Test
+    void withdraw_By_Key_Reports_Insufficient_Funds_And_Close_By_Key() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100, false));
+        int dob = Date.pack(1591, 7, 20);
+        assertEquals(AccountDatabase.Outcome.INSUFFICIENT_FUNDS,
+                database.withdraw(AccountKind.SAVINGS, "Anne", "Hutchinson", dob, 10_001));
+        assertEquals(AccountDatabase.Outcome.DONE,
+                database.withdraw(AccountKind.SAVINGS, "Anne", "Hutchinson", dob, 10_000));
+        assertTrue(database.close(AccountKind.SAVINGS, "anne", "HUTCHINSON", dob));
+        assertFalse(database.contains(AccountKind.SAVINGS, "Anne", "Hutchinson", dob));
+    }
+
+    @Test
+    void open_Shares_One_Profile_Per_Holder() {
+        AccountDatabase database = new AccountDatabase();
+        Checking checking = new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 100);
+        Savings savings = new Savings(new Profile("John", "Winthrop", new Date("1/12/1588")), 100, false);
+        Savings other = new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100, false);
+        database.open(checking);
+        database.open(savings);
+        database.open(other);
+        assertSame(checking.getHolder(), savings.getHolder());
+        assertNotSame(checking.getHolder(), other.getHolder());
+    }
+
+    @Test
+    void concurrent_Deposits_On_One_Account_Are_Not_Lost() throws InterruptedException {
+        AccountDatabase database = AccountDatabase.concurrent(1);
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 0));
+        int dob = Date.pack(1588, 1, 12);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 10_000; j++) {
+                    database.deposit(AccountKind.CHECKING, "John", "Winthrop", dob, 1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(AccountDatabase.Outcome.DONE,
+                database.withdraw(AccountKind.CHECKING, "John", "Winthrop", dob, 40_000));
+        assertEquals(AccountDatabase.Outcome.INSUFFICIENT_FUNDS,
+                database.withdraw(AccountKind.CHECKING, "John", "Winthrop", dob, 1));
+    }
+
+    @Test
+    void lock_Free_Money_Market_Withdrawals_Are_Counted_And_Never_Overdraw() throws InterruptedException {
+        AccountDatabase database = AccountDatabase.lockFree(1);
+        MoneyMarket account = new MoneyMarket(new Profile("John", "Winthrop", new Date("01/12/1588")), 2050);
+        database.open(account);
+        int dob = Date.pack(1588, 1, 12);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 2_000; j++) {
+                    database.withdraw(AccountKind.MONEY_MARKET, "John", "Winthrop", dob, 1);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(197_000, account.getBalanceCents());
+        assertEquals(8_000, account.getWithdrawals());
+        assertFalse(account.getLoyalty());
+        assertEquals(AccountDatabase.Outcome.INSUFFICIENT_FUNDS,
+                database.withdraw(AccountKind.MONEY_MARKET, "John", "Winthrop", dob, 197_001));
+    }
+
+    @Test
+    void parallel_Month_End_Matches_A_Sequential_Run() {
+        AccountDatabase parallel = mixedBook();
+        AccountDatabase sequential = mixedBook();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int month = 0; month < 3; month++) {
+                parallel.applyMonthEnd(new MonthEndEngine(pool, 1));
+                sequential.applyMonthEnd(new MonthEndEngine(pool, Integer.MAX_VALUE));
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertEquals(report(sequential), report(parallel));
+        assertFalse(report(parallel).equals(report(mixedBook())));
+    }
+
+    @Test
+    void loader_Numbers_Lines_Across_Chunks_And_Rejects_Bad_Ones(@TempDir Path dir) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int line = 1; line <= 60; line++) {
+            String record = switch (line) {
+                case 7, 23 -> "";
+                case 41 -> "   ";
+                case 15 -> "O C Bad Deposit 1/1/1990 -5";
+                case 30 -> "MM Low Balance 1/1/1990 100";
+                case 45 -> "C First2 Last2 1/1/1990 10";
+                case 52 -> "X Bad Type 1/1/1990 10";
+                default -> switch (line % 4) {
+                    case 0 -> "O C First" + line + " Last" + line + " 1/1/1990 100.50";
+                    case 1 -> "CC First" + line + " Last" + line + " 1/1/2003 100 1";
+                    case 2 -> "C First" + line + " Last" + line + " 1/1/1990 10";
+                    default -> "S First" + line + " Last" + line + " 2/2/1980 20 " + (line % 2);
+                };
+            };
+            text.append(record).append(line < 60 ? "\r\n" : "");
+        }
+        Path file = dir.resolve("accounts.txt");
+        Files.writeString(file, text);
+        Date.setClock(Clock.fixed(Instant.parse("2023-06-15T12:00:00Z"), ZoneOffset.UTC));
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            AccountDatabase database = new AccountDatabase();
+            AccountLoader.Result result = new AccountLoader(pool, 64).load(file, database);
+            assertEquals(53, result.opened());
+            assertEquals(53, database.getNumAcct());
+            List<Long> rejected = new ArrayList<>();
+            for (AccountLoader.Rejection rejection : result.rejected()) {
+                rejected.add(rejection.lineNumber());
+            }
+            assertEquals(List.of(15L, 30L, 45L, 52L), rejected);
+            assertEquals("Initial deposit cannot be 0 or negative.", result.rejected().get(0).reason());
+            assertNull(result.rejected().get(2).line());
+            assertTrue(database.contains(AccountKind.SAVINGS, "First59", "Last59", Date.pack(1980, 2, 2)));
+            assertTrue(database.contains(AccountKind.CHECKING, "First60", "Last60", Date.pack(1990, 1, 1)));
+        } finally {
+            pool.shutdown();
+            Date.setClock(Clock.systemDefaultZone());
+        }
+    }
+
+    @Test
+    void loader_Rejects_Lines_With_The_Messages_Of_The_O_Command(@TempDir Path dir) throws IOException {
+        List<String> records = List.of("O", "CC Short Record 1/1/2003 100", "S Short Record 1/1/1990 100",
+                "X Bad Type 1/1/1990 10", "CC Bad Campus 1/1/2003 100 7", "C Bad Date 2/30/1990 10",
+                "C Bad Date 1-1-1990 10", "C Young Holder 1/1/2020 10", "CC Old Holder 1/1/1950 10 0",
+                "C Bad Amount 1/1/1990 ten", "MM Low Balance 1/1/1990 100");
+        Path file = dir.resolve("accounts.txt");
+        Files.write(file, records);
+        AccountDatabase database = new AccountDatabase();
+        AccountLoader.Result result = new AccountLoader().load(file, database);
+        assertEquals(0, result.opened());
+        assertEquals(records.size(), result.rejected().size());
+        for (int i = 0; i < records.size(); i++) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            TransactionManager manager = new TransactionManager(database, new PrintStream(output, true));
+            String command = records.get(i).startsWith("O") ? records.get(i) : "O " + records.get(i);
+            manager.execute(command);
+            assertEquals(output.toString().strip(), result.rejected().get(i).reason(), command);
+        }
+        assertEquals(0, database.getNumAcct());
+    }
+
+    @Test
+    void open_Command_Rounds_The_Deposit_To_Cents_Like_Deposit_And_Withdraw() {
+        AccountDatabase database = new AccountDatabase();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TransactionManager manager = new TransactionManager(database, new PrintStream(output, true));
+        manager.execute("O C Roger Williams 12/21/1603 0.001");
+        assertEquals(0, database.getNumAcct());
+        assertTrue(output.toString().contains("Initial deposit cannot be 0 or negative."));
+        manager.execute("O MM John Winthrop 1/12/1588 1999.999");
+        assertEquals(1, database.getNumAcct());
+        assertTrue(database.contains(AccountKind.MONEY_MARKET, "John", "Winthrop", Date.pack(1588, 1, 12)));
+        assertTrue(report(database).contains("::Balance $2,000.00"));
+    }
+
+    @Test
+    void update_Balances_Report_Is_Written_Without_Holding_The_Locks() throws InterruptedException {
+        AccountDatabase database = AccountDatabase.concurrent(4);
+        int dob = Date.pack(1588, 1, 12);
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        boolean[] depositedWhileWriting = new boolean[1];
+        StringWriter report = new StringWriter();
+        Writer slowClient = slowClient(report, () -> database.deposit(AccountKind.CHECKING, "John", "Winthrop", dob, 100),
+                depositedWhileWriting);
+        try (ReportWriter out = ReportWriter.to(slowClient)) {
+            database.printUpdatedBalances(out);
+        }
+        assertTrue(depositedWhileWriting[0]);
+        assertTrue(report.toString().contains("Checking::John Winthrop 1/12/1588::Balance $5,004.17"));
+    }
+
+    @Test
+    void projection_Report_Shows_The_Accounts_As_They_Were_Captured() throws InterruptedException {
+        AccountDatabase database = AccountDatabase.concurrent(4);
+        int dob = Date.pack(1588, 1, 12);
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        boolean[] depositedWhileWriting = new boolean[1];
+        StringWriter report = new StringWriter();
+        Writer slowClient = slowClient(report, () -> database.deposit(AccountKind.CHECKING, "John", "Winthrop", dob, 100),
+                depositedWhileWriting);
+        try (ReportWriter out = ReportWriter.to(slowClient)) {
+            database.printProjectedBalances(12, out);
+        }
+        assertTrue(depositedWhileWriting[0]);
+        assertTrue(report.toString().contains("Checking::John Winthrop 1/12/1588::Balance $5,000.00::projected $"));
+        assertTrue(report(database).contains("::Balance $5,001.00"));
+    }
+
+    @Test
+    void projection_Command_Prints_The_Projected_Balances() {
+        AccountDatabase database = new AccountDatabase();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        TransactionManager manager = new TransactionManager(database, new PrintStream(output, true));
+        manager.execute("O C John Winthrop 1/12/1588 5000");
+        manager.execute("PF 0");
+        manager.execute("PF twelve");
+        manager.execute("PF 12");
+        String printed = output.toString();
+        assertTrue(printed.contains("Projection - months must be 1 to 600."));
+        assertTrue(printed.contains("Not a valid number of months."));
+        assertTrue(printed.contains("*list of accounts with balances projected 12 months ahead."));
+        assertTrue(printed.contains("Checking::John Winthrop 1/12/1588::Balance $5,000.00::projected $"));
+        assertTrue(report(database).contains("::Balance $5,000.00"));
+    }
+
+    @Test
+    void journaled_Changes_Are_Replayed_Into_A_New_Database(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("accounts.journal");
+        AccountDatabase database = new AccountDatabase();
+        try (AccountJournal journal = AccountJournal.open(file, database)) {
+            database.open(new MoneyMarket(new Profile("John", "Winthrop", new Date("01/12/1588")), 2500));
+            database.open(new CollegeChecking(new Profile("Roger", "Williams", new Date("12/21/1603")), 200, Campus.CAMDEN));
+            database.withdraw(AccountKind.MONEY_MARKET, "John", "Winthrop", Date.pack(1588, 1, 12), 60_000);
+            database.applyMonthEnd(new MonthEndEngine());
+            database.deposit(AccountKind.COLLEGE_CHECKING, "roger", "williams", Date.pack(1603, 12, 21), 1_000);
+            database.close(AccountKind.COLLEGE_CHECKING, "Roger", "Williams", Date.pack(1603, 12, 21));
+        }
+        AccountDatabase rebuilt = new AccountDatabase();
+        try (AccountJournal journal = AccountJournal.open(file, rebuilt)) {
+            assertEquals(6, journal.replayed());
+        }
+        assertEquals(report(database), report(rebuilt));
+        assertFalse(rebuilt.contains(AccountKind.COLLEGE_CHECKING, "Roger", "Williams", Date.pack(1603, 12, 21)));
+    }
+
+    @Test
+    void changes_Refused_By_A_Failed_Journal_Leave_The_Accounts_Alone(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("accounts.journal");
+        AccountDatabase database = new AccountDatabase();
+        int dob = Date.pack(1588, 1, 12);
+        AccountJournal journal = AccountJournal.open(file, database);
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        journal.close();
+        assertThrows(UncheckedIOException.class, () -> database.deposit(AccountKind.CHECKING, "John", "Winthrop", dob, 100));
+        String afterFailure = report(database);
+        assertThrows(UncheckedIOException.class, () -> database.deposit(AccountKind.CHECKING, "John", "Winthrop", dob, 100));
+        assertThrows(UncheckedIOException.class, () -> database.withdraw(AccountKind.CHECKING, "John", "Winthrop", dob, 100));
+        assertThrows(UncheckedIOException.class, () -> database.applyMonthEnd(new MonthEndEngine()));
+        assertThrows(UncheckedIOException.class, () -> database.close(AccountKind.CHECKING, "John", "Winthrop", dob));
+        assertEquals(afterFailure, report(database));
+        assertTrue(database.contains(AccountKind.CHECKING, "John", "Winthrop", dob));
+    }
+
+    @Test
+    void journaled_Month_End_Replays_With_The_Rates_It_Ran_With(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("accounts.journal");
+        AccountDatabase database = new AccountDatabase();
+        Properties rates = new Properties();
+        rates.setProperty("savings.loyalRate", "1200");
+        rates.setProperty("money_market.tiers", "300000:900:950");
+        RateTable.install(RateTable.from(rates));
+        try (AccountJournal journal = AccountJournal.open(file, database)) {
+            database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 1000, true));
+            database.open(new MoneyMarket(new Profile("John", "Winthrop", new Date("01/12/1588")), 4000));
+            database.applyMonthEnd(new MonthEndEngine());
+        } finally {
+            RateTable.install(RateTable.defaults());
+        }
+        assertTrue(report(database).contains("Anne Hutchinson 7/20/1591::Balance $1,010.00"));
+        AccountDatabase rebuilt = new AccountDatabase();
+        try (AccountJournal journal = AccountJournal.open(file, rebuilt)) {
+            assertEquals(3, journal.replayed());
+        }
+        assertEquals(report(database), report(rebuilt));
+    }
+
+    @Test
+    void snapshot_Restores_Every_Field_And_The_Index(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("accounts.snapshot");
+        AccountDatabase database = new AccountDatabase();
+        database.open(new MoneyMarket(new Profile("John", "Winthrop", new Date("01/12/1588")), 2500));
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 10));
+        database.open(new CollegeChecking(new Profile("Roger", "Williams", new Date("12/21/1603")), 200, Campus.NEWARK));
+        database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100, true));
+        database.withdraw(AccountKind.MONEY_MARKET, "John", "Winthrop", Date.pack(1588, 1, 12), 60_000);
+        database.snapshot().writeAsync(file, Runnable::run).join();
+        AccountDatabase restored = new AccountDatabase();
+        AccountSnapshot.Restored result = AccountSnapshot.load(file, restored);
+        assertEquals(4, result.accounts());
+        assertEquals(report(database), report(restored));
+        Profile holder = new Profile("John", "Winthrop", new Date("01/12/1588"));
+        restored.close(new Checking(holder, 0));
+        assertFalse(restored.contains(AccountKind.CHECKING, "John", "Winthrop", Date.pack(1588, 1, 12)));
+        assertTrue(restored.contains(AccountKind.MONEY_MARKET, "John", "Winthrop", Date.pack(1588, 1, 12)));
+    }
+
+    @Test
+    void installed_Rate_Table_Drives_Fees_Interest_And_Month_End(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("rates.properties");
+        Files.writeString(file, "savings.loyalRate=1200\nsavings.fee=300\nsavings.noFeeBalance=200000\n");
+        AccountDatabase database = new AccountDatabase();
+        Savings savings = new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 1000, true);
+        database.open(savings);
+        RateTable.install(RateTable.load(file));
+        try {
+            StringWriter report = new StringWriter();
+            try (ReportWriter out = ReportWriter.to(report)) {
+                database.printFeesAndInterests(out);
+                database.printUpdatedBalances(out);
+            }
+            assertTrue(report.toString().contains("::fee $3.00::monthly interest $10.00"));
+            assertEquals(100_700, savings.getBalanceCents());
+        } finally {
+            RateTable.install(RateTable.defaults());
+        }
+    }
+
+    @Test
+    void month_End_Retry_Uses_The_Rates_The_Run_Captured() {
+        Savings savings = new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 1000, true);
+        Properties rates = new Properties();
+        rates.setProperty("savings.loyalRate", "1200");
+        AccountColumns columns = AccountColumns.capture(new Account[] {savings}, 1, RateTable.from(rates));
+        columns.computeMonthEnd();
+        columns.applyMonthEnd();
+        savings.depositCents(100_000);
+        columns.writeBack();
+        assertEquals(202_000, savings.getBalanceCents());
+    }
+
+    @Test
+    void bad_Rates_File_Is_Reported_At_Startup(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("rates.properties");
+        Files.writeString(file, "savings.rate=-1\n");
+        System.setProperty(RateTable.RATES_PROPERTY, file.toString());
+        try {
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertFalse(TransactionManager.installRates(new PrintStream(err, true)));
+            assertTrue(err.toString().contains("Invalid rate table entry savings.rate=-1"));
+            assertEquals(RateTable.defaults(), RateTable.current());
+        } finally {
+            System.clearProperty(RateTable.RATES_PROPERTY);
+        }
+    }
+
+    @Test
+    void projection_Leaves_Balances_Alone_And_Flips_Money_Market_Loyalty() {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 10_000, true));
+        MoneyMarket moneyMarket = new MoneyMarket(new Profile("John", "Winthrop", new Date("01/12/1588")), 2000);
+        database.open(moneyMarket);
+        moneyMarket.withdrawCents(100);
+        String before = report(database);
+        Properties rates = new Properties();
+        rates.setProperty("money_market.fee", "0");
+        RateTable.install(RateTable.from(rates));
+        try {
+            ProjectionEngine.Projection projection = database.project(60, new ProjectionEngine());
+            assertEquals(before, report(database));
+            for (int row = 0; row < projection.columns().size(); row++) {
+                long[] path = projection.path(row);
+                if (projection.columns().kind(row) == AccountKind.MONEY_MARKET) {
+                    assertFalse(projection.columns().loyal(row));
+                    assertTrue(projection.loyal(row));
+                    assertTrue(Math.abs(path[60] - projection.balance(row)) <= 60);
+                }
+                else {
+                    assertTrue(projection.closedForm(row));
+                    assertTrue(Math.abs(path[60] - projection.balance(row)) <= 60);
+                }
+            }
+        } finally {
+            RateTable.install(RateTable.defaults());
+        }
+    }
+
+    @Test
+    void snapshot_Holding_An_Account_Twice_Is_Rejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("accounts.snapshot");
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 10));
+        database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100, true));
+        database.snapshot().writeAsync(file, Runnable::run).join();
+        byte[] valid = Files.readAllBytes(file);
+        int header = AccountSnapshot.HEADER_BYTES;
+        int record = AccountSnapshot.RECORD_BYTES;
+        ByteBuffer doubled = ByteBuffer.allocate(valid.length + record);
+        doubled.put(valid, 0, header + record).put(valid, header, record).put(valid, header + record, valid.length - header - record);
+        doubled.putInt(8, 3);
+        doubled.putInt(AccountSnapshot.CHECKSUM_AT, AccountSnapshot.checksum(doubled));
+        Files.write(file, doubled.array());
+        AccountDatabase restored = new AccountDatabase();
+        assertThrows(IOException.class, () -> AccountSnapshot.load(file, restored));
+        assertEquals(0, restored.getNumAcct());
+        assertEquals(report(new AccountDatabase()), report(restored));
+        AccountDatabase withOthers = new AccountDatabase();
+        withOthers.open(new Checking(new Profile("Roger", "Williams", new Date("12/21/1603")), 20));
+        String before = report(withOthers);
+        assertThrows(IOException.class, () -> AccountSnapshot.load(file, withOthers));
+        assertEquals(before, report(withOthers));
+    }
+
+    @Test
+    void snapshot_That_Fails_Its_Checksum_Is_Not_Restored(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("accounts.snapshot");
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 10));
+        database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("07/20/1591")), 100, true));
+        database.snapshot().write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[AccountSnapshot.HEADER_BYTES + 8] ^= 1; // the low byte of the first record's balance
+        Files.write(file, bytes);
+        AccountDatabase restored = new AccountDatabase();
+        IOException error = assertThrows(IOException.class, () -> AccountSnapshot.load(file, restored));
+        assertTrue(error.getMessage().contains("checksum"));
+        assertEquals(0, restored.getNumAcct());
+    }
+
+    /**
+     * A client that is slow to take the report: before its first write it runs a task on another thread
+     * and waits up to 5 seconds for it, which only finishes in time if the report holds no locks.
+     * @param report Where the written report is collected.
+     * @param task The task to run during the first write, such as a deposit.
+     * @param finished Set to whether the task finished while the report was being written.
+     * @return The writer for the report.
+     */
+    private static Writer slowClient(StringWriter report, Runnable task, boolean[] finished) {
+        return new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                if (report.getBuffer().length() == 0) {
+                    Thread other = new Thread(task);
+                    other.start();
+                    try {
+                        other.join(5_000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    finished[0] = !other.isAlive();
+                }
+                report.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static AccountDatabase mixedBook() {
+        AccountDatabase database = new AccountDatabase();
+        for (int i = 0; i < 200; i++) {
+            Profile holder = new Profile("First" + i, "Last" + i, new Date("01/12/1990"));
+            double balance = 5 + i * 37.25;
+            switch (i % 4) {
+                case 0 -> database.open(new Checking(holder, balance));
+                case 1 -> database.open(new CollegeChecking(holder, balance, Campus.values()[i % 3]));
+                case 2 -> {
+                    MoneyMarket account = new MoneyMarket(holder, 2000 + balance);
+                    database.open(account);
+                    for (int w = 0; w < i % 6; w++) {
+                        account.withdrawCents(5_000);
+                    }
+                }
+                default -> database.open(new Savings(holder, balance, i % 8 == 3));
+            }
+        }
+        return database;
+    }
+
+    private static String report(AccountDatabase database) {
+        StringWriter report = new StringWriter();
+        try (ReportWriter out = ReportWriter.to(report)) {
+            database.printSorted(out);
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,205 @@
+package rubank;
+
+import rubank.AccountDatabase;
+import rubank.AccountKind;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events for the AccountDatabase, so a latency spike in a recording can be lined up
+ * with the GC pauses and safepoints around it.
+ * Each operation creates its event, calls begin() before the work and record() after it. While no recording
+ * has the event enabled, begin(), end() and shouldCommit() do nothing and the JIT removes the event
+ * allocation, so the fields are only filled in when the event will actually be written.
+ * Enable them with -XX:StartFlightRecording or in JDK Mission Control under "RU Bank".
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public final class AccountEvents {
+    private AccountEvents() {
+    }
+
+    /**
+     * An O command or open() of one account.
+     */
+    @Name("rubank.AccountOpen")
+    @Label("Account Open")
+    @Category({"RU Bank", "Accounts"})
+    public static class Open extends Event {
+        @Label("Account Type")
+        String kind;
+
+        @Label("Initial Deposit (cents)")
+        long amountCents;
+
+        @Label("Opened")
+        @Description("False if the holder already had an account of this type")
+        boolean opened;
+
+        /**
+         * Ends the event and writes it if a recording wants it.
+         * @param kind The kind of account.
+         * @param amountCents The initial deposit, in cents.
+         * @param opened Whether the account was opened.
+         */
+        void record(AccountKind kind, long amountCents, boolean opened) {
+            end();
+            if (shouldCommit()) {
+                this.kind = kind.getCode();
+                this.amountCents = amountCents;
+                this.opened = opened;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A C command or close() of one account.
+     */
+    @Name("rubank.AccountClose")
+    @Label("Account Close")
+    @Category({"RU Bank", "Accounts"})
+    public static class Close extends Event {
+        @Label("Account Type")
+        String kind;
+
+        @Label("Closed")
+        @Description("False if the holder had no account of this type")
+        boolean closed;
+
+        /**
+         * Ends the event and writes it if a recording wants it.
+         * @param kind The kind of account.
+         * @param closed Whether the account was closed.
+         */
+        void record(AccountKind kind, boolean closed) {
+            end();
+            if (shouldCommit()) {
+                this.kind = kind.getCode();
+                this.closed = closed;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A D command, including the lookup and any wait for the account's stripe and the journal.
+     */
+    @Name("rubank.Deposit")
+    @Label("Deposit")
+    @Category({"RU Bank", "Transactions"})
+    public static class Deposit extends Event {
+        @Label("Account Type")
+        String kind;
+
+        @Label("Amount (cents)")
+        long amountCents;
+
+        @Label("Outcome")
+        String outcome;
+
+        /**
+         * Ends the event and writes it if a recording wants it.
+         * @param kind The kind of account.
+         * @param amountCents The amount, in cents.
+         * @param outcome The outcome.
+         */
+        void record(AccountKind kind, long amountCents, AccountDatabase.Outcome outcome) {
+            end();
+            if (shouldCommit()) {
+                this.kind = kind.getCode();
+                this.amountCents = amountCents;
+                this.outcome = outcome.name();
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A W command, including the lookup and any wait for the account's stripe and the journal.
+     */
+    @Name("rubank.Withdraw")
+    @Label("Withdraw")
+    @Category({"RU Bank", "Transactions"})
+    public static class Withdraw extends Event {
+        @Label("Account Type")
+        String kind;
+
+        @Label("Amount (cents)")
+        long amountCents;
+
+        @Label("Outcome")
+        @Description("DONE, NOT_FOUND or INSUFFICIENT_FUNDS")
+        String outcome;
+
+        /**
+         * Ends the event and writes it if a recording wants it.
+         * @param kind The kind of account.
+         * @param amountCents The amount, in cents.
+         * @param outcome The outcome.
+         */
+        void record(AccountKind kind, long amountCents, AccountDatabase.Outcome outcome) {
+            end();
+            if (shouldCommit()) {
+                this.kind = kind.getCode();
+                this.amountCents = amountCents;
+                this.outcome = outcome.name();
+                commit();
+            }
+        }
+    }
+
+    /**
+     * A rebuild of the sorted view after a bulk change.
+     */
+    @Name("rubank.Sort")
+    @Label("Sorted View Rebuild")
+    @Category({"RU Bank", "Reports"})
+    public static class Sort extends Event {
+        @Label("Accounts")
+        int accounts;
+
+        /**
+         * Ends the event and writes it if a recording wants it.
+         * @param accounts The number of accounts sorted.
+         */
+        void record(int accounts) {
+            end();
+            if (shouldCommit()) {
+                this.accounts = accounts;
+                commit();
+            }
+        }
+    }
+
+    /**
+     * One phase of a month-end run: capture into columns, update, journal, or the UB report.
+     */
+    @Name("rubank.MonthEnd")
+    @Label("Month-End Phase")
+    @Category({"RU Bank", "Month End"})
+    public static class MonthEnd extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Accounts")
+        int accounts;
+
+        /**
+         * Ends the event and writes it if a recording wants it.
+         * @param phase The name of the phase.
+         * @param accounts The number of accounts the phase touched.
+         */
+        void record(String phase, int accounts) {
+            end();
+            if (shouldCommit()) {
+                this.phase = phase;
+                this.accounts = accounts;
+                commit();
+            }
+        }
+    }
+}
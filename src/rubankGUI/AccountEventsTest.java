@@ -0,0 +1,108 @@
+package rubank;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rubank.AccountDatabase;
+import rubank.AccountJournal;
+import rubank.AccountKind;
+import rubank.Checking;
+import rubank.Date;
+import rubank.Profile;
+import rubank.ReportWriter;
+import rubank.Savings;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AccountEventsTest {
+
+    @Test
+    void deposits_And_Withdrawals_Are_Recorded_With_Their_Outcome(@TempDir Path dir) throws IOException {
+        AccountDatabase database = new AccountDatabase();
+        int dob = Date.pack(1588, 1, 12);
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 100));
+        List<RecordedEvent> events = record(dir, () -> {
+            database.deposit(AccountKind.CHECKING, "John", "Winthrop", dob, 2_500);
+            database.deposit(AccountKind.SAVINGS, "John", "Winthrop", dob, 700);
+            database.withdraw(AccountKind.CHECKING, "John", "Winthrop", dob, 12_000);
+            database.withdraw(AccountKind.CHECKING, "John", "Winthrop", dob, 12_501);
+            database.withdraw(AccountKind.MONEY_MARKET, "John", "Winthrop", dob, 100);
+        }, "rubank.Deposit", "rubank.Withdraw");
+        assertEquals(List.of(
+                "rubank.Deposit C 2500 DONE",
+                "rubank.Deposit S 700 NOT_FOUND",
+                "rubank.Withdraw C 12000 DONE",
+                "rubank.Withdraw C 12501 INSUFFICIENT_FUNDS",
+                "rubank.Withdraw MM 100 NOT_FOUND"), describe(events, "kind", "amountCents", "outcome"));
+    }
+
+    @Test
+    void month_End_Records_Each_Phase_With_Its_Account_Count(@TempDir Path dir) throws IOException {
+        AccountDatabase database = new AccountDatabase();
+        database.open(new Checking(new Profile("John", "Winthrop", new Date("01/12/1588")), 5000));
+        database.open(new Savings(new Profile("Roger", "Williams", new Date("12/21/1603")), 400, true));
+        database.open(new Savings(new Profile("Anne", "Hutchinson", new Date("7/20/1591")), 900, false));
+        try (AccountJournal journal = AccountJournal.open(dir.resolve("accounts.journal"), database)) {
+            List<RecordedEvent> events = record(dir, () -> {
+                try (ReportWriter out = ReportWriter.to(new StringWriter())) {
+                    database.printUpdatedBalances(out);
+                }
+            }, "rubank.MonthEnd");
+            assertEquals(List.of(
+                    "rubank.MonthEnd journal 3",
+                    "rubank.MonthEnd capture 3",
+                    "rubank.MonthEnd update 3",
+                    "rubank.MonthEnd report 3"), describe(events, "phase", "accounts"));
+        }
+    }
+
+    /**
+     * Runs a task under a recording of some events and reads the events back from the recording file.
+     * @param dir The directory to write the recording to.
+     * @param task The work to record.
+     * @param names The names of the events to enable.
+     * @return The recorded events, in the order they were committed.
+     */
+    private static List<RecordedEvent> record(Path dir, Runnable task, String... names) throws IOException {
+        Path file = dir.resolve("events.jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : names) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+            task.run();
+            recording.stop();
+            recording.dump(file);
+        }
+        List<RecordedEvent> events = new ArrayList<>(RecordingFile.readAllEvents(file));
+        events.sort((a, b) -> a.getStartTime().compareTo(b.getStartTime()));
+        return events;
+    }
+
+    /**
+     * Describes each event as its name followed by some of its fields, for comparing against the expected events.
+     * @param events The events.
+     * @param fields The fields to include, in order.
+     * @return One line per event.
+     */
+    private static List<String> describe(List<RecordedEvent> events, String... fields) {
+        List<String> lines = new ArrayList<>();
+        for (RecordedEvent event : events) {
+            StringBuilder line = new StringBuilder(event.getEventType().getName());
+            for (String field : fields) {
+                line.append(' ').append((Object) event.getValue(field));
+            }
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+}
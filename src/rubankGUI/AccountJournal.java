@@ -0,0 +1,494 @@
+package rubank;
+
+import rubank.Account;
+import rubank.AccountDatabase;
+import rubank.AccountKind;
+import rubank.Campus;
+import rubank.Checking;
+import rubank.CollegeChecking;
+import rubank.Date;
+import rubank.Money;
+import rubank.MoneyMarket;
+import rubank.Profile;
+import rubank.RateTable;
+import rubank.Savings;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Write-ahead journal of every change made to an AccountDatabase, replayed on startup to rebuild it.
+ * Opens, closes, deposits, withdrawals and month-end runs are appended to an in-memory buffer while the
+ * database holds the locks that order them, and the database waits for sync() before it acknowledges the change.
+ * sync() is a group commit: the first caller to find its record unwritten writes and forces everything
+ * appended so far, and callers arriving meanwhile wait for that force or start the next one together,
+ * so one fsync covers every transaction that was in flight.
+ * <p>
+ * Each record is the payload length and its CRC-32, both ints, then the payload: the record type, and for
+ * account records the account kind, packed date of birth, amount in cents, a kind-specific byte (campus
+ * code or loyalty) and the holder's names in UTF-8; for a month-end, the RateTable it ran with, which replay
+ * uses instead of the installed one so a changed table cannot rewrite it. A record cut short by a crash fails
+ * its length or CRC check, and it and anything after it are dropped when the journal is opened.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public class AccountJournal implements Closeable {
+    static final long NONE = 0; // sequence number that sync() never has to wait for
+    private static final int HEADER_BYTES = 8; // payload length and CRC-32
+    private static final int INITIAL_BUFFER = 1 << 16;
+    private static final byte OPEN = 1;
+    private static final byte CLOSE = 2;
+    private static final byte DEPOSIT = 3;
+    private static final byte WITHDRAW = 4;
+    private static final byte MONTH_END = 5;
+    private static final AccountKind[] KINDS = AccountKind.values();
+
+    private final FileChannel channel; // the journal file, positioned at its end
+    private final int replayed; // number of records replayed when the journal was opened
+    private final ReentrantLock lock = new ReentrantLock(); // guards everything below
+    private final Condition synced = lock.newCondition(); // signalled when a write and force finishes
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer pending; // records appended since the last write started
+    private ByteBuffer writing; // records being written; swapped with pending by each write
+    private long appended; // sequence number of the last appended record
+    private long durable; // sequence number of the last record forced to disk
+    private long position; // file offset just after the last appended record
+    private boolean flushing; // a caller is writing and forcing for everyone
+    private IOException failure; // the write that failed; the journal is unusable after it
+
+    /**
+     * Creates a journal around an open file that has been replayed.
+     * @param channel The journal file, positioned at its end.
+     * @param replayed The number of records replayed.
+     * @throws IOException if the file position cannot be read.
+     */
+    private AccountJournal(FileChannel channel, int replayed) throws IOException {
+        this.channel = channel;
+        this.replayed = replayed;
+        this.position = channel.position();
+        this.pending = ByteBuffer.allocate(INITIAL_BUFFER);
+        this.writing = ByteBuffer.allocate(INITIAL_BUFFER);
+    }
+
+    /**
+     * Opens a journal file, replays it into a database, and journals the database's changes from then on.
+     * The file is created if it does not exist. A torn record at the end is cut off.
+     * @param file The journal file.
+     * @param database The database to rebuild, normally empty. It must not be a lockFree() database,
+     *                 whose transactions are not ordered by a lock the journal could follow.
+     * @return The journal, which the caller closes when the database is no longer changed.
+     * @throws IOException if the file cannot be read or written, or a record does not apply to the database.
+     */
+    public static AccountJournal open(Path file, AccountDatabase database) throws IOException {
+        return open(file, database, 0);
+    }
+
+    /**
+     * Opens a journal file and replays the records from a given offset, such as the position an
+     * AccountSnapshot that was loaded into the database recorded, then journals the database's changes.
+     * @param file The journal file.
+     * @param database The database to bring up to date.
+     * @param from The offset of the first record to replay.
+     * @return The journal, which the caller closes when the database is no longer changed.
+     * @throws IOException if the file cannot be read or written, is shorter than from, or a record does not apply.
+     */
+    public static AccountJournal open(Path file, AccountDatabase database, long from) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = channel.size();
+            if (from < 0 || from > size) {
+                throw new IOException("Journal " + file + " has " + size + " bytes, cannot replay from byte " + from);
+            }
+            if (size - from > Integer.MAX_VALUE - HEADER_BYTES) {
+                throw new IOException("Journal " + file + " is too large to replay: " + size + " bytes");
+            }
+            ByteBuffer bytes = ByteBuffer.allocate((int) (size - from));
+            channel.position(from);
+            while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            bytes.flip();
+            Replay replay = new Replay(database, from);
+            long end = from + replay.run(bytes);
+            if (end < size) {
+                channel.truncate(end);
+            }
+            channel.position(end);
+            AccountJournal journal = new AccountJournal(channel, replay.count);
+            database.attach(journal);
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Basic getter for the number of records replayed when the journal was opened.
+     * @return The number of replayed records.
+     */
+    public int replayed() {
+        return replayed;
+    }
+
+    /**
+     * Appends the opening of an account, with its balance and kind-specific fields.
+     * @param account The account being opened.
+     * @return The sequence number to pass to sync().
+     */
+    long logOpen(Account account) {
+        int extra = 0;
+        if (account instanceof CollegeChecking acc) {
+            extra = acc.getCampus().getValue();
+        }
+        else if (account instanceof Savings acc) {
+            extra = acc.getLoyalty() ? 1 : 0;
+        }
+        return append(OPEN, account, account.getBalanceCents(), extra);
+    }
+
+    /**
+     * Appends the closing of an account.
+     * @param account The account closed.
+     * @return The sequence number to pass to sync().
+     */
+    long logClose(Account account) {
+        return append(CLOSE, account, 0, 0);
+    }
+
+    /**
+     * Appends a deposit.
+     * @param account The account deposited into.
+     * @param amountCents The amount, in cents.
+     * @return The sequence number to pass to sync().
+     */
+    long logDeposit(Account account, long amountCents) {
+        return append(DEPOSIT, account, amountCents, 0);
+    }
+
+    /**
+     * Appends a withdrawal that was made.
+     * @param account The account withdrawn from.
+     * @param amountCents The amount, in cents.
+     * @return The sequence number to pass to sync().
+     */
+    long logWithdraw(Account account, long amountCents) {
+        return append(WITHDRAW, account, amountCents, 0);
+    }
+
+    /**
+     * Appends a month-end run over every account.
+     * @param rates The rate table the month-end ran with.
+     * @return The sequence number to pass to sync().
+     */
+    long logMonthEnd(RateTable rates) {
+        lock.lock();
+        try {
+            int start = begin(1 + rates.encodedBytes());
+            pending.put(MONTH_END);
+            rates.write(pending);
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Basic getter for the file offset just after the last appended record. Read while the database
+     * holds every lock, it is where a snapshot taken at that moment leaves off in the journal.
+     * @return The offset to replay from after loading such a snapshot.
+     */
+    long position() {
+        lock.lock();
+        try {
+            return position;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Basic getter for the sequence number of the last record appended.
+     * @return The sequence number to pass to sync() to cover every record so far.
+     */
+    long lastAppended() {
+        lock.lock();
+        try {
+            return appended;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Appends an account record.
+     * @param type The record type.
+     * @param account The account the record is about.
+     * @param amountCents The balance or amount, in cents.
+     * @param extra The campus code or loyalty, or 0.
+     * @return The sequence number of the record.
+     */
+    private long append(byte type, Account account, long amountCents, int extra) {
+        Profile holder = account.getHolder();
+        byte[] fname = holder.getFname().getBytes(StandardCharsets.UTF_8);
+        byte[] lname = holder.getLname().getBytes(StandardCharsets.UTF_8);
+        lock.lock();
+        try {
+            int start = begin(1 + 1 + 4 + 8 + 1 + 4 + fname.length + 4 + lname.length);
+            pending.put(type);
+            pending.put((byte) account.getKind().ordinal());
+            pending.putInt(holder.getDOB().packed());
+            pending.putLong(amountCents);
+            pending.put((byte) extra);
+            pending.putInt(fname.length).put(fname);
+            pending.putInt(lname.length).put(lname);
+            return end(start);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes room for a record in the pending buffer and skips its header. Called with the lock held.
+     * @param payloadBytes The size of the payload.
+     * @return The offset of the record's header.
+     */
+    private int begin(int payloadBytes) {
+        if (failure != null) {
+            throw new UncheckedIOException("Journal is unusable after a failed write", failure);
+        }
+        int needed = HEADER_BYTES + payloadBytes;
+        if (pending.remaining() < needed) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + needed));
+            pending.flip();
+            larger.put(pending);
+            pending = larger;
+        }
+        int start = pending.position();
+        pending.position(start + HEADER_BYTES);
+        return start;
+    }
+
+    /**
+     * Fills in the header of the record being appended. Called with the lock held.
+     * @param start The offset returned by begin().
+     * @return The sequence number of the record.
+     */
+    private long end(int start) {
+        int payloadStart = start + HEADER_BYTES;
+        int length = pending.position() - payloadStart;
+        crc.reset();
+        crc.update(pending.array(), payloadStart, length);
+        pending.putInt(start, length);
+        pending.putInt(start + 4, (int) crc.getValue());
+        position += HEADER_BYTES + length;
+        return ++appended;
+    }
+
+    /**
+     * Waits until a record and every record before it are on disk, writing and forcing them if no one else is.
+     * @param sequence The sequence number returned when the record was appended, or NONE.
+     * @throws UncheckedIOException if the journal cannot be written.
+     */
+    void sync(long sequence) {
+        lock.lock();
+        try {
+            while (durable < sequence) {
+                if (failure != null) {
+                    throw new UncheckedIOException("Journal is unusable after a failed write", failure);
+                }
+                if (flushing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                flushing = true;
+                long target = appended;
+                ByteBuffer batch = pending;
+                pending = writing;
+                writing = batch;
+                IOException error = null;
+                lock.unlock();
+                try {
+                    batch.flip();
+                    while (batch.hasRemaining()) {
+                        channel.write(batch);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    error = e;
+                } finally {
+                    batch.clear();
+                    lock.lock();
+                }
+                flushing = false;
+                if (error != null) {
+                    failure = error;
+                }
+                else {
+                    durable = target;
+                }
+                synced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forces every appended record to disk and closes the file.
+     * @throws IOException if the records cannot be written or the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            sync(lastAppended());
+        } catch (UncheckedIOException e) {
+            channel.close();
+            throw e.getCause();
+        }
+        channel.close();
+    }
+
+    /**
+     * Applies the records of a journal file to a database, in order.
+     */
+    private static class Replay {
+        private final AccountDatabase database;
+        private final long from; // file offset of the first byte replayed
+        private final CRC32 crc = new CRC32();
+        private MonthEndEngine engine; // made on the first month-end record
+        private int count; // records applied
+
+        Replay(AccountDatabase database, long from) {
+            this.database = database;
+            this.from = from;
+        }
+
+        /**
+         * Applies every whole record in the bytes.
+         * @param bytes The journal file contents from the first byte replayed.
+         * @return The offset in bytes just after the last whole record.
+         * @throws IOException if a whole record does not apply to the database.
+         */
+        long run(ByteBuffer bytes) throws IOException {
+            while (bytes.remaining() >= HEADER_BYTES) {
+                int start = bytes.position();
+                int length = bytes.getInt();
+                int checksum = bytes.getInt();
+                if (length < 1 || length > bytes.remaining()) {
+                    return start;
+                }
+                crc.reset();
+                crc.update(bytes.array(), bytes.position(), length);
+                if ((int) crc.getValue() != checksum) {
+                    return start;
+                }
+                ByteBuffer payload = bytes.slice(bytes.position(), length);
+                bytes.position(bytes.position() + length);
+                if (!apply(payload)) {
+                    throw new IOException("Journal record at byte " + (from + start) + " does not apply to the database");
+                }
+                count++;
+            }
+            return bytes.position();
+        }
+
+        /**
+         * Applies one record.
+         * @param payload The record payload.
+         * @return true if the change was made as it was the first time.
+         * @throws IOException if the record is not one the journal writes.
+         */
+        private boolean apply(ByteBuffer payload) throws IOException {
+            byte type = payload.get();
+            if (type == MONTH_END) {
+                RateTable rates;
+                try {
+                    rates = RateTable.read(payload);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Month-end record in journal has no valid rate table", e);
+                }
+                if (engine == null) {
+                    engine = new MonthEndEngine();
+                }
+                database.applyMonthEnd(engine, rates);
+                return true;
+            }
+            int kindIndex = payload.get();
+            if (kindIndex < 0 || kindIndex >= KINDS.length) {
+                throw new IOException("Unknown account kind " + kindIndex + " in journal");
+            }
+            AccountKind kind = KINDS[kindIndex];
+            int dob = payload.getInt();
+            long amountCents = payload.getLong();
+            int extra = payload.get();
+            String fname = string(payload);
+            String lname = string(payload);
+            return switch (type) {
+                case OPEN -> database.open(newAccount(kind, new Profile(fname, lname, Date.ofPacked(dob)), amountCents, extra));
+                case CLOSE -> database.close(kind, fname, lname, dob);
+                case DEPOSIT -> database.deposit(kind, fname, lname, dob, amountCents) == AccountDatabase.Outcome.DONE;
+                case WITHDRAW -> database.withdraw(kind, fname, lname, dob, amountCents) == AccountDatabase.Outcome.DONE;
+                default -> throw new IOException("Unknown record type " + type + " in journal");
+            };
+        }
+
+        private static String string(ByteBuffer payload) {
+            int length = payload.getInt();
+            String value = new String(payload.array(), payload.arrayOffset() + payload.position(), length,
+                    StandardCharsets.UTF_8);
+            payload.position(payload.position() + length);
+            return value;
+        }
+
+        /**
+         * Rebuilds an account as it was opened.
+         * @param kind The kind of account.
+         * @param holder The holder.
+         * @param balanceCents The opening balance, in cents.
+         * @param extra The campus code or loyalty.
+         * @return The account.
+         * @throws IOException if the campus code is not one the journal writes.
+         */
+        private static Account newAccount(AccountKind kind, Profile holder, long balanceCents, int extra)
+                throws IOException {
+            double dollars = Money.toDollars(balanceCents);
+            Account account = switch (kind) {
+                case CHECKING -> new Checking(holder, dollars);
+                case COLLEGE_CHECKING -> new CollegeChecking(holder, dollars, campusOf(extra));
+                case MONEY_MARKET -> {
+                    MoneyMarket acc = new MoneyMarket(holder, dollars);
+                    acc.setLoyalty(extra == 1);
+                    yield acc;
+                }
+                case SAVINGS -> new Savings(holder, dollars, extra == 1);
+            };
+            account.setBalanceCents(balanceCents);
+            return account;
+        }
+
+        /**
+         * Looks up a campus by its code.
+         * @param code 0 for New Brunswick, 1 for Newark, 2 for Camden.
+         * @return The Campus.
+         * @throws IOException if the code is not one of those.
+         */
+        private static Campus campusOf(int code) throws IOException {
+            for (Campus campus : Campus.values()) {
+                if (campus.getValue() == code) {
+                    return campus;
+                }
+            }
+            throw new IOException("Unknown campus code " + code + " in journal");
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package rubank;
+
+/**
+ Enum class representing the kind of an account.
+ Declared in the order accounts are sorted by account type.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public enum AccountKind {
+        CHECKING("Checking", "C"), // Enum representing a Checking account
+        COLLEGE_CHECKING("College Checking", "CC"), // Enum representing a College Checking account
+        MONEY_MARKET("Money Market", "MM"), // Enum representing a Money Market account
+        SAVINGS("Savings", "S"); // Enum representing a Savings account
+
+        private static final AccountKind[] KINDS = values(); // values() copies its array on every call
+
+        private final String typeName;
+        private final String code;
+
+        AccountKind(String typeName, String code) {
+            this.typeName = typeName;
+            this.code = code;
+        }
+
+        /**
+         Basic getter for the account type name printed before the holder.
+         @return the account type name, e.g. "College Checking"
+         */
+        public String getTypeName() {
+            return typeName;
+        }
+
+        /**
+         Basic getter for the account type code used by commands.
+         @return the account type code, e.g. "CC"
+         */
+        public String getCode() {
+            return code;
+        }
+
+        /**
+         A holder can have only one account per group: Checking and College Checking share a group.
+         @return the kind that represents this kind's group.
+         */
+        public AccountKind openGroup() {
+            if (this == COLLEGE_CHECKING) {
+                return CHECKING;
+            }
+            return this;
+        }
+
+        /**
+         Looks up the kind for an account type code, such as a command token, without copying it.
+         @param code the account type code, e.g. "CC"
+         @return the kind with that code, or null if there is none.
+         */
+        public static AccountKind fromCode(CharSequence code) {
+            for (AccountKind kind : KINDS) {
+                if (kind.code.contentEquals(code)) {
+                    return kind;
+                }
+            }
+            return null;
+        }
+}
\ No newline at end of file
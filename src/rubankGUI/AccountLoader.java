@@ -0,0 +1,267 @@
+package rubank;
+
+import src.rubank.CommandTokenizer;
+import src.rubank.OpenRecord;
+import rubank.Account;
+import rubank.AccountDatabase;
+import rubank.Profile;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Bulk loader behind "Load Accounts From File".
+ * Memory-maps the account file, splits it on line boundaries into one chunk per core, parses the
+ * chunks in parallel, and opens every parsed account with a single AccountDatabase.openAll() call.
+ * Each line is an open record in the same form as the O command, with or without the leading "O":
+ * <pre>
+ * O C John Doe 2/19/2000 599.99
+ * CC Mary Lindsey 12/1/2002 100 2
+ * S Jane Doe 10/1/1995 400 1
+ * </pre>
+ * Each line is parsed and checked by OpenRecord, as the O command is, and a line that fails is rejected with
+ * its line number and the message the O command would print.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public class AccountLoader {
+    private static final int MIN_CHUNK = 1 << 20; // default smallest chunk; smaller files are parsed as one chunk
+    private static final int MAX_CHUNK = Integer.MAX_VALUE; // one mapping cannot be larger than this
+
+    private final ForkJoinPool pool; // pool the chunks are parsed on
+    private final int minChunk; // smallest chunk, in bytes
+
+    /**
+     * A line of the file that was not opened.
+     * @param lineNumber The 1-based line number in the file.
+     * @param line The text of the line, or null for a duplicate found when opening.
+     * @param reason Why the line was rejected, in the words the O command would print.
+     */
+    public record Rejection(long lineNumber, String line, String reason) {
+        /**
+         * Represents the Rejection in the form "line 12: Invalid campus code. [O CC Mary Lindsey 12/1/2002 100 7]".
+         * Duplicates found by the database carry no line text, and are shown without the brackets.
+         * @return A String in the above form.
+         */
+        @Override
+        public String toString() {
+            if (line == null) {
+                return "line " + lineNumber + ": " + reason;
+            }
+            return "line " + lineNumber + ": " + reason + " [" + line + "]";
+        }
+    }
+
+    /**
+     * Outcome of loading one file.
+     * @param opened The number of accounts opened.
+     * @param rejected The rejected lines, in line order.
+     */
+    public record Result(int opened, List<Rejection> rejected) {
+    }
+
+    /**
+     * Creates a loader that parses on the common ForkJoinPool.
+     */
+    public AccountLoader() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a loader that parses on a given pool.
+     * @param pool The pool to parse chunks on. The caller owns it and shuts it down.
+     */
+    public AccountLoader(ForkJoinPool pool) {
+        this(pool, MIN_CHUNK);
+    }
+
+    /**
+     * Creates a loader that parses on a given pool, splitting files into chunks of at least a given size.
+     * @param pool The pool to parse chunks on. The caller owns it and shuts it down.
+     * @param minChunk The smallest chunk in bytes, such as a few lines to exercise the chunk boundaries.
+     */
+    public AccountLoader(ForkJoinPool pool, int minChunk) {
+        if (minChunk < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1: " + minChunk);
+        }
+        this.pool = pool;
+        this.minChunk = minChunk;
+    }
+
+    /**
+     * Loads the accounts in a file into a database.
+     * @param file The account file, UTF-8 with one record per line.
+     * @param database The database to open the accounts in.
+     * @return The number of accounts opened and the lines that were rejected.
+     * @throws IOException if the file cannot be read.
+     */
+    public Result load(Path file, AccountDatabase database) throws IOException {
+        List<ParsedChunk> chunks;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            List<ChunkParser> parsers = new ArrayList<>();
+            for (long[] bounds : split(channel)) {
+                MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, bounds[0], bounds[1] - bounds[0]);
+                parsers.add(new ChunkParser(bytes));
+            }
+            chunks = new ArrayList<>();
+            for (ChunkParser parser : parsers) {
+                pool.execute(parser);
+            }
+            for (ChunkParser parser : parsers) {
+                chunks.add(parser.join());
+            }
+        }
+        List<Account> accounts = new ArrayList<>();
+        Map<Account, Long> lineOf = new IdentityHashMap<>();
+        List<Rejection> rejected = new ArrayList<>();
+        long firstLine = 1;
+        for (ParsedChunk chunk : chunks) {
+            for (ParsedLine parsed : chunk.lines()) {
+                long lineNumber = firstLine + parsed.index();
+                if (parsed.account() != null) {
+                    accounts.add(parsed.account());
+                    lineOf.put(parsed.account(), lineNumber);
+                }
+                else {
+                    rejected.add(new Rejection(lineNumber, parsed.line(), parsed.reason()));
+                }
+            }
+            firstLine += chunk.lineCount();
+        }
+        List<Account> duplicates = database.openAll(accounts);
+        for (Account duplicate : duplicates) {
+            Profile holder = duplicate.getHolder();
+            String reason = holder.getFname() + " " + holder.getLname() + " " + holder.getDOB()
+                    + "(" + duplicate.getKind().getCode() + ") is already in the database.";
+            rejected.add(new Rejection(lineOf.get(duplicate), null, reason));
+        }
+        if (!duplicates.isEmpty()) {
+            rejected.sort((a, b) -> Long.compare(a.lineNumber(), b.lineNumber()));
+        }
+        return new Result(accounts.size() - duplicates.size(), rejected);
+    }
+
+    /**
+     * Splits a file into byte ranges that start at the beginning of a line and end just after a newline
+     * (or at the end of the file), one range per core but none smaller than the loader's smallest chunk.
+     * @param channel The open file.
+     * @return The [start, end) byte offsets of each range, in file order.
+     * @throws IOException if the file cannot be read.
+     */
+    private List<long[]> split(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long target = Math.max(minChunk, size / pool.getParallelism() + 1);
+        target = Math.min(target, MAX_CHUNK / 2);
+        List<long[]> ranges = new ArrayList<>();
+        long start = 0;
+        ByteBuffer one = ByteBuffer.allocate(1);
+        while (start < size) {
+            long end = Math.min(size, start + target);
+            while (end < size) {
+                one.clear();
+                channel.read(one, end - 1);
+                if (one.get(0) == '\n') {
+                    break;
+                }
+                end++;
+            }
+            if (end - start > MAX_CHUNK) {
+                throw new IOException("Line longer than " + (MAX_CHUNK / 2) + " bytes near offset " + start);
+            }
+            ranges.add(new long[] {start, end});
+            start = end;
+        }
+        return ranges;
+    }
+
+    /**
+     * One line of a chunk after parsing: either an account or the reason it was rejected.
+     * @param index The 0-based line number within the chunk.
+     * @param line The text of the line, kept only for rejected lines.
+     * @param account The parsed account, or null if the line was rejected.
+     * @param reason Why the line was rejected, or null.
+     */
+    private record ParsedLine(int index, String line, Account account, String reason) {
+    }
+
+    /**
+     * The parsed non-blank lines of a chunk and the total number of lines it holds.
+     * @param lines The parsed lines, in order.
+     * @param lineCount The number of lines in the chunk, blank ones included.
+     */
+    private record ParsedChunk(List<ParsedLine> lines, int lineCount) {
+    }
+
+    /**
+     * Parses the lines of one mapped chunk.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static class ChunkParser extends RecursiveTask<ParsedChunk> {
+        private final MappedByteBuffer bytes;
+
+        ChunkParser(MappedByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        protected ParsedChunk compute() {
+            List<ParsedLine> lines = new ArrayList<>();
+            CommandTokenizer token = new CommandTokenizer();
+            byte[] buffer = new byte[256];
+            int limit = bytes.limit();
+            int lineStart = 0;
+            int index = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && bytes.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int length = lineEnd - lineStart;
+                if (buffer.length < length) {
+                    buffer = new byte[Math.max(length, buffer.length * 2)];
+                }
+                bytes.get(lineStart, buffer, 0, length);
+                String line = new String(buffer, 0, length, StandardCharsets.UTF_8).trim();
+                if (!line.isEmpty()) {
+                    lines.add(parseLine(index, line, token));
+                }
+                index++;
+                lineStart = lineEnd + 1;
+            }
+            return new ParsedChunk(lines, index);
+        }
+    }
+
+    /**
+     * Parses one open record with OpenRecord, which makes the checks and prints the messages of the O command.
+     * @param index The 0-based line number within its chunk.
+     * @param line The trimmed, non-blank line.
+     * @param token The chunk's tokenizer, reused for every line.
+     * @return The parsed account, or the reason the line was rejected.
+     */
+    private static ParsedLine parseLine(int index, String line, CommandTokenizer token) {
+        token.tokenize(line);
+        OpenRecord record = OpenRecord.parse(token, token.tokenEquals(0, "O") ? 1 : 0);
+        return record.account() != null
+                ? accept(index, record.account())
+                : reject(index, line, record.reason());
+    }
+
+    private static ParsedLine accept(int index, Account account) {
+        return new ParsedLine(index, null, account, null);
+    }
+
+    private static ParsedLine reject(int index, String line, String reason) {
+        return new ParsedLine(index, line, null, reason);
+    }
+}
@@ -0,0 +1,515 @@
+package rubank;
+
+import rubank.Account;
+import rubank.AccountDatabase;
+import rubank.AccountKind;
+import rubank.Campus;
+import rubank.Checking;
+import rubank.CollegeChecking;
+import rubank.Date;
+import rubank.Money;
+import rubank.MoneyMarket;
+import rubank.Profile;
+import rubank.Savings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary copy of an AccountDatabase, for restarting without replaying every transaction.
+ * AccountDatabase.snapshot() copies every account's state into primitive arrays while it holds its locks;
+ * writing the copy to disk happens afterwards, on the caller's thread or in the background with writeAsync().
+ * <p>
+ * The file is a header, one fixed-width record per account, and a string table holding each distinct name once:
+ * <pre>
+ * header   int magic, int version, int accounts, int strings, long journal position, int CRC-32, int unused
+ * record   byte kind, byte loyal, byte campus, byte unused, int packed DOB, long balance in cents,
+ *          int withdrawals, int first name, int last name  (names are string table indexes)
+ * strings  int end offset of each string, then the UTF-8 bytes of every string
+ * </pre>
+ * The CRC-32 covers the header fields before it, every record and the string table, so a corrupt file is
+ * refused instead of restoring wrong balances. The records of one holder's accounts are written next to each
+ * other. load() memory-maps the file, checks the CRC and decodes the string table and then the records in parallel partitions; each partition builds one Profile
+ * per holder, folding the names and computing the hash the index uses, and the accounts that share it.
+ * The accounts are then indexed in one pass and the sorted view is rebuilt with a parallel sort. A file that
+ * fails any check leaves the database as it was.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public class AccountSnapshot {
+    private static final int MAGIC = 0x52554253; // "RUBS"
+    private static final int VERSION = 2;
+    static final int HEADER_BYTES = 32; // magic, version, account count, string count, journal position, CRC-32, unused
+    static final int CHECKSUM_AT = 24; // offset of the CRC-32, which covers the bytes before it and after the header
+    static final int RECORD_BYTES = 28; // one account record
+    private static final int WRITE_BUFFER = 1 << 20;
+    private static final int GRAIN = 16_384; // records or strings per load partition
+    private static final AccountKind[] KINDS = AccountKind.values();
+
+    private final int size; // number of accounts
+    private final byte[] kind; // AccountKind ordinal of each account
+    private final boolean[] loyal; // loyal customer status; false for checking
+    private final byte[] campus; // campus code; 0 unless college checking
+    private final int[] dob; // packed date of birth of each holder
+    private final long[] balance; // balance in cents
+    private final int[] withdrawals; // withdrawals this month; 0 unless money market
+    private final int[] fname; // string table index of each holder's first name
+    private final int[] lname; // string table index of each holder's last name
+    private final int[] group; // first row holding the same holder, so one holder's rows can be written together
+    private final List<String> strings; // distinct names, in order of first use
+    private final long journalPosition; // journal offset the snapshot leaves off at, or 0
+
+    /**
+     * The outcome of loading a snapshot.
+     * @param accounts The number of accounts opened.
+     * @param journalPosition The journal offset to replay from to bring the database up to date.
+     * @param elapsedNanos The wall-clock time of the load in nanoseconds.
+     */
+    public record Restored(int accounts, long journalPosition, long elapsedNanos) {
+        /**
+         * Represents the Restored in the form "1000000 accounts restored in 812.345 ms".
+         * @return A String in the above form.
+         */
+        @Override
+        public String toString() {
+            return String.format("%d accounts restored in %.3f ms", accounts, elapsedNanos / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Creates empty arrays for the given number of accounts.
+     * @param size The number of accounts.
+     * @param journalPosition The journal offset the snapshot leaves off at.
+     */
+    private AccountSnapshot(int size, long journalPosition) {
+        this.size = size;
+        this.journalPosition = journalPosition;
+        kind = new byte[size];
+        loyal = new boolean[size];
+        campus = new byte[size];
+        dob = new int[size];
+        balance = new long[size];
+        withdrawals = new int[size];
+        fname = new int[size];
+        lname = new int[size];
+        group = new int[size];
+        strings = new ArrayList<>();
+    }
+
+    /**
+     * Copies the state of a set of accounts. Called by AccountDatabase.snapshot() with every lock held.
+     * @param accounts The accounts.
+     * @param count The number of accounts at the start of the array to copy.
+     * @param journalPosition The journal offset just after the last change the accounts reflect, or 0.
+     * @return The copy.
+     */
+    static AccountSnapshot capture(Account[] accounts, int count, long journalPosition) {
+        AccountSnapshot snapshot = new AccountSnapshot(count, journalPosition);
+        Map<String, Integer> ids = new HashMap<>();
+        Map<Profile, Integer> firstRow = new IdentityHashMap<>();
+        for (int i = 0; i < count; i++) {
+            Account account = accounts[i];
+            long word = account.word();
+            snapshot.kind[i] = (byte) account.getKind().ordinal();
+            if (account instanceof MoneyMarket) {
+                snapshot.balance[i] = MoneyMarket.balanceOf(word);
+                snapshot.loyal[i] = MoneyMarket.loyalOf(word);
+                snapshot.withdrawals[i] = MoneyMarket.withdrawalsOf(word);
+            }
+            else {
+                snapshot.balance[i] = word;
+                if (account instanceof Savings acc) {
+                    snapshot.loyal[i] = acc.getLoyalty();
+                }
+                else if (account instanceof CollegeChecking acc) {
+                    snapshot.campus[i] = (byte) acc.getCampus().getValue();
+                }
+            }
+            Profile holder = account.getHolder();
+            Integer first = firstRow.putIfAbsent(holder, i);
+            if (first == null) {
+                snapshot.group[i] = i;
+                snapshot.dob[i] = holder.getDOB().packed();
+                snapshot.fname[i] = snapshot.intern(ids, holder.getFname());
+                snapshot.lname[i] = snapshot.intern(ids, holder.getLname());
+            }
+            else {
+                snapshot.group[i] = first;
+                snapshot.dob[i] = snapshot.dob[first];
+                snapshot.fname[i] = snapshot.fname[first];
+                snapshot.lname[i] = snapshot.lname[first];
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Looks up a name in the string table, adding it if it is new.
+     * @param ids The index of each name added so far.
+     * @param name The name.
+     * @return The name's index in the string table.
+     */
+    private int intern(Map<String, Integer> ids, String name) {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = strings.size();
+            ids.put(name, id);
+            strings.add(name);
+        }
+        return id;
+    }
+
+    /**
+     * Basic getter for the number of accounts in the snapshot.
+     * @return The number of accounts.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the snapshot to a file in the background.
+     * @param file The snapshot file.
+     * @param executor The executor to write on.
+     * @return A future that completes when the file is on disk, or with an UncheckedIOException.
+     */
+    public CompletableFuture<Void> writeAsync(Path file, Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                write(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Writes the snapshot to a file. It is written and forced to a temporary file next to it first and then
+     * moved over it, so a crash leaves either the old snapshot or the new one.
+     * @param file The snapshot file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        byte[][] encoded = new byte[strings.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(encoded.length).putLong(journalPosition);
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, CHECKSUM_AT);
+            channel.position(HEADER_BYTES);
+            ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER);
+            for (int i : holderOrder()) {
+                room(channel, out, RECORD_BYTES, crc);
+                out.put(kind[i]).put((byte) (loyal[i] ? 1 : 0)).put(campus[i]).put((byte) 0);
+                out.putInt(dob[i]).putLong(balance[i]).putInt(withdrawals[i]).putInt(fname[i]).putInt(lname[i]);
+            }
+            int end = 0;
+            for (byte[] string : encoded) {
+                room(channel, out, 4, crc);
+                end = Math.addExact(end, string.length);
+                out.putInt(end);
+            }
+            for (byte[] string : encoded) {
+                for (int offset = 0; offset < string.length; ) {
+                    room(channel, out, 1, crc);
+                    int length = Math.min(out.remaining(), string.length - offset);
+                    out.put(string, offset, length);
+                    offset += length;
+                }
+            }
+            drain(channel, out, crc);
+            header.putInt(CHECKSUM_AT, (int) crc.getValue());
+            header.clear();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Orders the rows so each holder's rows are together, with a counting sort on the first row of each holder.
+     * @return The rows in write order.
+     */
+    private int[] holderOrder() {
+        int[] start = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            start[group[i] + 1]++;
+        }
+        for (int i = 1; i <= size; i++) {
+            start[i] += start[i - 1];
+        }
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[start[group[i]]++] = i;
+        }
+        return order;
+    }
+
+    /**
+     * Writes out the buffer if it has less than the given room left.
+     * @param channel The file being written.
+     * @param out The buffer.
+     * @param bytes The room needed.
+     * @param crc The checksum of the bytes written so far.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void room(FileChannel channel, ByteBuffer out, int bytes, CRC32 crc) throws IOException {
+        if (out.remaining() < bytes) {
+            drain(channel, out, crc);
+        }
+    }
+
+    /**
+     * Adds everything in the buffer to the checksum, writes it out and empties the buffer.
+     * @param channel The file being written.
+     * @param out The buffer.
+     * @param crc The checksum of the bytes written so far.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void drain(FileChannel channel, ByteBuffer out, CRC32 crc) throws IOException {
+        out.flip();
+        crc.update(out.duplicate());
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Loads a snapshot file into a database, decoding on the common ForkJoinPool.
+     * @param file The snapshot file.
+     * @param database The database to load into, normally empty.
+     * @return The number of accounts opened, the journal offset to replay from, and the time taken.
+     * @throws IOException if the file cannot be read, is not a snapshot, fails its checksum, or holds an account
+     *                     twice or one already in the database; the database is then left as it was.
+     */
+    public static Restored load(Path file, AccountDatabase database) throws IOException {
+        return load(file, database, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads a snapshot file into a database, decoding on a given pool.
+     * @param file The snapshot file.
+     * @param database The database to load into, normally empty.
+     * @param pool The pool to decode on. The caller owns it and shuts it down.
+     * @return The number of accounts opened, the journal offset to replay from, and the time taken.
+     * @throws IOException if the file cannot be read, is not a snapshot, fails its checksum, or holds an account
+     *                     twice or one already in the database; the database is then left as it was.
+     */
+    public static Restored load(Path file, AccountDatabase database, ForkJoinPool pool) throws IOException {
+        long start = System.nanoTime();
+        MappedByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is too large to map: " + channel.size() + " bytes");
+            }
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (bytes.limit() < HEADER_BYTES || bytes.getInt(0) != MAGIC || bytes.getInt(4) != VERSION) {
+            throw new IOException(file + " is not a version " + VERSION + " account snapshot");
+        }
+        int count = bytes.getInt(8);
+        int stringCount = bytes.getInt(12);
+        long journalPosition = bytes.getLong(16);
+        long offsets = HEADER_BYTES + (long) count * RECORD_BYTES;
+        long blob = offsets + 4L * stringCount;
+        if (count < 0 || stringCount < 0 || blob > bytes.limit()
+                || (stringCount > 0 && blob + bytes.getInt((int) blob - 4) != bytes.limit())) {
+            throw new IOException("Snapshot " + file + " is truncated or corrupt");
+        }
+        if (checksum(bytes) != bytes.getInt(CHECKSUM_AT)) {
+            throw new IOException("Snapshot " + file + " fails its checksum");
+        }
+        String[] names = new String[stringCount];
+        Account[] accounts = new Account[count];
+        try {
+            pool.invoke(new Slice(0, stringCount, (from, to) -> decodeStrings(bytes, (int) offsets, (int) blob, names, from, to)));
+            pool.invoke(new Slice(0, count, (from, to) -> decodeAccounts(bytes, names, accounts, from, to)));
+        } catch (UncheckedIOException e) {
+            throw new IOException("Snapshot " + file + " is corrupt", e.getCause());
+        }
+        List<Account> duplicates = database.restoreAll(accounts);
+        if (!duplicates.isEmpty()) {
+            throw new IOException("Snapshot " + file + " holds " + duplicates.size()
+                    + " accounts twice or already in the database; none were restored");
+        }
+        return new Restored(count, journalPosition, System.nanoTime() - start);
+    }
+
+    /**
+     * Computes the CRC-32 of a snapshot file: the header fields before the checksum, then everything after the header.
+     * @param file The whole file, at least HEADER_BYTES long.
+     * @return The checksum the header should hold.
+     */
+    static int checksum(ByteBuffer file) {
+        CRC32 crc = new CRC32();
+        crc.update(file.slice(0, CHECKSUM_AT));
+        crc.update(file.slice(HEADER_BYTES, file.limit() - HEADER_BYTES));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Decodes a range of the string table.
+     * @param bytes The mapped file.
+     * @param offsets The offset of the string end offsets.
+     * @param blob The offset of the string bytes.
+     * @param names The decoded strings.
+     * @param from The first string, inclusive.
+     * @param to The last string, exclusive.
+     */
+    private static void decodeStrings(MappedByteBuffer bytes, int offsets, int blob, String[] names, int from, int to) {
+        byte[] buffer = new byte[64];
+        int begin = from == 0 ? 0 : bytes.getInt(offsets + 4 * (from - 1));
+        for (int i = from; i < to; i++) {
+            int end = bytes.getInt(offsets + 4 * i);
+            int length = end - begin;
+            if (length < 0 || blob + end > bytes.limit()) {
+                throw new UncheckedIOException(new IOException("Bad string table entry " + i));
+            }
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, buffer.length * 2)];
+            }
+            bytes.get(blob + begin, buffer, 0, length);
+            names[i] = new String(buffer, 0, length, StandardCharsets.UTF_8);
+            begin = end;
+        }
+    }
+
+    /**
+     * Decodes the account records of the holders whose first record lies in a range, sharing one Profile per holder.
+     * A holder's records may run past the end of the range, and those at its start may belong to the range before.
+     * @param bytes The mapped file.
+     * @param names The decoded string table.
+     * @param accounts The decoded accounts.
+     * @param from The first record, inclusive.
+     * @param to The last record, exclusive.
+     */
+    private static void decodeAccounts(MappedByteBuffer bytes, String[] names, Account[] accounts, int from, int to) {
+        while (from > 0 && from < to && sameHolder(bytes, from - 1, from)) {
+            from++;
+        }
+        while (to < accounts.length && to > from && sameHolder(bytes, to - 1, to)) {
+            to++;
+        }
+        Profile holder = null;
+        for (int i = from; i < to; i++) {
+            int at = HEADER_BYTES + i * RECORD_BYTES;
+            int kindIndex = bytes.get(at);
+            boolean loyal = bytes.get(at + 1) == 1;
+            int campusCode = bytes.get(at + 2);
+            int dob = bytes.getInt(at + 4);
+            long balance = bytes.getLong(at + 8);
+            int withdrawals = bytes.getInt(at + 16);
+            int first = bytes.getInt(at + 20);
+            int last = bytes.getInt(at + 24);
+            if (kindIndex < 0 || kindIndex >= KINDS.length || first < 0 || first >= names.length
+                    || last < 0 || last >= names.length) {
+                throw new UncheckedIOException(new IOException("Bad account record " + i));
+            }
+            if (holder == null || !sameHolder(bytes, i - 1, i)) {
+                holder = new Profile(names[first], names[last], Date.ofPacked(dob));
+            }
+            double dollars = Money.toDollars(balance);
+            Account account = switch (KINDS[kindIndex]) {
+                case CHECKING -> new Checking(holder, dollars);
+                case COLLEGE_CHECKING -> new CollegeChecking(holder, dollars, campusOf(campusCode, i));
+                case MONEY_MARKET -> new MoneyMarket(holder, dollars);
+                case SAVINGS -> new Savings(holder, dollars, loyal);
+            };
+            if (account instanceof MoneyMarket) {
+                account.compareAndSetWord(account.word(), MoneyMarket.pack(balance, withdrawals, loyal));
+            }
+            else {
+                account.setBalanceCents(balance);
+            }
+            accounts[i] = account;
+        }
+    }
+
+    /**
+     * Checks whether two records belong to the same holder: the same names and date of birth.
+     * @param bytes The mapped file.
+     * @param a The first record.
+     * @param b The second record.
+     * @return true if the holder fields are equal.
+     */
+    private static boolean sameHolder(MappedByteBuffer bytes, int a, int b) {
+        int atA = HEADER_BYTES + a * RECORD_BYTES;
+        int atB = HEADER_BYTES + b * RECORD_BYTES;
+        return bytes.getInt(atA + 4) == bytes.getInt(atB + 4)
+                && bytes.getInt(atA + 20) == bytes.getInt(atB + 20)
+                && bytes.getInt(atA + 24) == bytes.getInt(atB + 24);
+    }
+
+    /**
+     * Looks up a campus by its code.
+     * @param code 0 for New Brunswick, 1 for Newark, 2 for Camden.
+     * @param record The record the code was read from, for the error message.
+     * @return The Campus.
+     */
+    private static Campus campusOf(int code, int record) {
+        for (Campus campus : Campus.values()) {
+            if (campus.getValue() == code) {
+                return campus;
+            }
+        }
+        throw new UncheckedIOException(new IOException("Bad campus code " + code + " in account record " + record));
+    }
+
+    /**
+     * Work done on one range of rows.
+     */
+    private interface RangeAction {
+        void run(int from, int to);
+    }
+
+    /**
+     * A range of rows, split in half until it is no larger than the grain.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static class Slice extends RecursiveAction {
+        private final int from; // first row, inclusive
+        private final int to; // last row, exclusive
+        private final RangeAction action;
+
+        Slice(int from, int to, RangeAction action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= GRAIN) {
+                action.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Slice(from, mid, action), new Slice(mid, to, action));
+        }
+    }
+}
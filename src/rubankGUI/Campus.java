@@ -1,3 +1,5 @@
+package rubank;
+
 /**
  Enum class representing a campus.
  Can be one of 3 campuses.
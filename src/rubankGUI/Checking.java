@@ -1,4 +1,8 @@
+package rubank;
+
 import rubank.Account;
+import rubank.AccountKind;
+import rubank.RateTable;
 import rubank.Profile;
 
 import java.text.DecimalFormat;
@@ -9,8 +13,6 @@ import java.text.DecimalFormat;
  @author Dany Chucri, Madhur Nutulapati
  */
 public class Checking extends Account {
-    private static final double INT_RATE = 0.01; //1%
-    private static final double MONTHLY_FEE = 12.0;
 
     /**
      Creates an instance of Checking.
@@ -23,54 +25,52 @@ public class Checking extends Account {
 
     /**
      Calculates monthly interest with respect to checking account criteria.
-     @return the balance with monthly interest
+     @return the monthly interest in cents
      */
     @Override
-    public double monthlyInterest() {
-        return balance * (INT_RATE / 12);
+    public long monthlyInterestCents() {
+        return RateTable.current().product(AccountKind.CHECKING).interestCents(balance, false);
     }
 
     /**
      Calculates monthly fee with respect to checking account criteria.
-     @return the monthly fee or no fee if balance greater than or equal to 1000
+     @return the monthly fee in cents, by the installed RateTable
      */
     @Override
-    public double monthlyFee() {
-        if (balance >= 1000.0) {
-            return 0.0;
-        }
-        else {
-            return MONTHLY_FEE;
-        }
+    public long monthlyFeeCents() {
+        return RateTable.current().product(AccountKind.CHECKING).feeCents(balance, 0);
     }
 
     /**
-     method formats and returns a string representation of a checking account,
+     method formats and appends a string representation of a checking account,
      including the holder's name, date of birth, and balance.
-     @return formatted string
+     @param row the builder the representation is appended to.
+     @param formatter the currency formatter for the balance.
+     @param word the state word, which is the balance in cents.
+     */
+    @Override
+    void appendTo(StringBuilder row, DecimalFormat formatter, long word) {
+        row.append("Checking::");
+        appendHolderAndBalance(row, formatter, word);
+    }
+
+    /**
+     Basic getter for the kind of this checking account.
+     @return AccountKind.CHECKING
      */
     @Override
-    public String toString() {
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getCurrencyInstance();
-        String writtenBalance = formatter.format(balance);
-        return "Checking::" + holder.getFname() + " " + holder.getLname() + " " + holder.getDOB() + "::Balance " + writtenBalance;
+    public AccountKind getKind() {
+        return AccountKind.CHECKING;
     }
 
     /**
-     Compares two checking accounts based on their account type.
-     @param obj is the other account obj being compared.
-     @return int indicating the comparison = 0 if equal and negative value if not equal.
+     One month of this account's fee and interest applied to a balance.
+     @param word the balance in cents.
+     @param rates the rate table of the month-end.
+     @return the balance after the fee and interest, in cents.
      */
     @Override
-    public int compareTo(Account obj) {
-        String thisAccountType = this.toString();
-        String oAccType = obj.toString();
-        thisAccountType = thisAccountType.substring(0, thisAccountType.indexOf("::"));
-        oAccType = oAccType.substring(0, oAccType.indexOf("::"));
-        int accTypeCompare = thisAccountType.compareTo(oAccType);
-        if (accTypeCompare != 0) {
-            return accTypeCompare;
-        }
-        return this.holder.compareTo(obj.holder);
+    long monthEndWord(long word, RateTable rates) {
+        return rates.product(AccountKind.CHECKING).monthEndCents(word, 0, false);
     }
 }
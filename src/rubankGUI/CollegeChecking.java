@@ -1,6 +1,9 @@
-import rubank.Account;
+package rubank;
+
+import rubank.AccountKind;
 import rubank.Campus;
 import rubank.Checking;
+import rubank.RateTable;
 import rubank.Profile;
 
 import java.text.DecimalFormat;
@@ -13,8 +16,6 @@ import java.text.DecimalFormat;
 public class CollegeChecking extends Checking {
     private final Campus campus; //campus code 0 - New Brunswick, 1 - Newark, 2 - Camden
 
-    private static final double INT_RATE = 0.01; //1%
-    private static final double MONTHLY_FEE = 0;
 
     /**
      Creates an instance of Checking.
@@ -37,53 +38,53 @@ public class CollegeChecking extends Checking {
 
     /**
      Calculates monthly interest with respect to college checking account criteria.
-     @return the balance with monthly interest
+     @return the monthly interest in cents
      */
     @Override
-    public double monthlyInterest() {
-        return balance * (INT_RATE/12);
+    public long monthlyInterestCents() {
+        return RateTable.current().product(AccountKind.COLLEGE_CHECKING).interestCents(balance, false);
     }
 
     /**
      Calculates monthly fee with respect to college checking account criteria.
-     @return the monthly fee or no fee if balance greater than or equal to 1000
+     @return the monthly fee in cents, by the installed RateTable
      */
     @Override
-    public double monthlyFee() {
-        if (balance >= 1000.0) {
-            return 0.0;
-        }
-        else {
-            return MONTHLY_FEE;
-        }
+    public long monthlyFeeCents() {
+        return RateTable.current().product(AccountKind.COLLEGE_CHECKING).feeCents(balance, 0);
     }
 
     /**
-     method formats and returns a string representation of a college checking account,
+     method formats and appends a string representation of a college checking account,
      including the holder's name, date of birth, and balance.
-     @return formatted string
+     @param row the builder the representation is appended to.
+     @param formatter the currency formatter for the balance.
+     @param word the state word, which is the balance in cents.
      */
     @Override
-    public String toString() {
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getCurrencyInstance();
-        String writtenBalance = formatter.format(balance);
-        return "College Checking::" + holder.getFname() + " " + holder.getLname() + " " + holder.getDOB() + "::Balance " + writtenBalance + "::" + campus.toString();
+    void appendTo(StringBuilder row, DecimalFormat formatter, long word) {
+        row.append("College Checking::");
+        appendHolderAndBalance(row, formatter, word);
+        row.append("::").append(campus);
     }
 
     /**
-     Compares two college checking accounts based on their account type.
-     @param obj is the other account obj being compared.
-     @return int indicating the comparison = 0 if equal and negative value if not equal.
+     Basic getter for the kind of this college checking account.
+     @return AccountKind.COLLEGE_CHECKING
      */
-    public int compareTo(Account obj) {
-        String thisAccountType = this.toString();
-        String oAccType = obj.toString();
-        thisAccountType = thisAccountType.substring(0, thisAccountType.indexOf("::"));
-        oAccType = oAccType.substring(0, oAccType.indexOf("::"));
-        int accTypeCompare = thisAccountType.compareTo(oAccType);
-        if (accTypeCompare != 0) {
-            return accTypeCompare;
-        }
-        return this.holder.compareTo(obj.holder);
+    @Override
+    public AccountKind getKind() {
+        return AccountKind.COLLEGE_CHECKING;
+    }
+
+    /**
+     One month of this account's fee and interest applied to a balance.
+     @param word the balance in cents.
+     @param rates the rate table of the month-end.
+     @return the balance after the fee and interest, in cents.
+     */
+    @Override
+    long monthEndWord(long word, RateTable rates) {
+        return rates.product(AccountKind.COLLEGE_CHECKING).monthEndCents(word, 0, false);
     }
-}
\ No newline at end of file
+}
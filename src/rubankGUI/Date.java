@@ -1,16 +1,21 @@
-import java.util.Calendar;
-import java.util.StringTokenizer;
+package rubank;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.NoSuchElementException;
 
 /**
  An Account's Date information, including date of births.
  Check's the validity of an account's date, which is the account holder's date of birth
  to make sure it is not a future or present date, a valid date.
+ The date is held as one packed int of the form yyyymmdd, so comparing two dates is one int compare.
+ Today's date comes from a Clock and is cached until midnight, so validation builds no Calendar.
  @author Dany Chucri, Madhur Nutulapati
  */
 public class Date implements Comparable<Date> {
-    private final int year; // Year of the date
-    private final int month; // Month of the date
-    private final int day; // Day of the date
+    private final int packed; // year * 10000 + month * 100 + day
 
     public static final int QUADRENNIAL = 4;
     public static final int CENTENNIAL = 100;
@@ -22,26 +27,199 @@ public class Date implements Comparable<Date> {
     public static final int DAYS_FEB = 28;
     public static final int EVEN_DAYS_MONTH = 30;
     public static final int ODD_DAYS_MONTH = 31;
+    public static final int INVALID = 0; // packed form of a date whose fields do not fit, 0/0/0
+    private static final int MAX_PACKED_YEAR = Integer.MAX_VALUE / 10_000 - 1;
+    private static final int[] DAYS_IN_MONTH = {0, ODD_DAYS_MONTH, DAYS_FEB,
+            ODD_DAYS_MONTH, EVEN_DAYS_MONTH, ODD_DAYS_MONTH,
+            EVEN_DAYS_MONTH, ODD_DAYS_MONTH, ODD_DAYS_MONTH,
+            EVEN_DAYS_MONTH, ODD_DAYS_MONTH, EVEN_DAYS_MONTH,
+            ODD_DAYS_MONTH}; // days per month outside leap years, indexed from 1
+
+    private static volatile Clock clock = Clock.systemDefaultZone(); // source of today's date
+    private static volatile Today today; // today's date, cached until the clock passes midnight
+
+    /**
+     * Today's packed date and the span of clock millis it holds for, in the zone of the clock it was read from.
+     * @param clock The clock today was read from.
+     * @param packed Today's packed date.
+     * @param from The first milli of today, inclusive.
+     * @param until The first milli of tomorrow, exclusive.
+     */
+    private record Today(Clock clock, int packed, long from, long until) {
+    }
 
     /**
      Creates an instance of Date.
+     Fields too large to pack, or negative, give a date that isValid() rejects.
      @param date A date (date of birth) String in the form of "xx/xx/xxxx".
      */
     public Date(String date){
-        StringTokenizer part = new StringTokenizer(date,"/");
-        this.month= Integer.parseInt(part.nextToken());
-        this.day = Integer.parseInt(part.nextToken());
-        this.year = Integer.parseInt(part.nextToken());
+        this.packed = parse(date, false);
     }
 
     /**
      Creates an instance of Date using the current date.
      */
     public Date(){
-        Calendar currInfo = Calendar.getInstance();
-        this.year = currInfo.get(Calendar.YEAR);
-        this.month = currInfo.get(Calendar.MONTH)+1;
-        this.day= currInfo.get(Calendar.DAY_OF_MONTH);
+        this.packed = today();
+    }
+
+    /**
+     * Creates an instance of Date from a packed date.
+     * @param packed A date packed by pack().
+     */
+    private Date(int packed){
+        this.packed = packed;
+    }
+
+    /**
+     * Creates an instance of Date from a packed date, such as one read back from storage.
+     * @param packed A date packed by pack().
+     * @return The Date.
+     */
+    public static Date ofPacked(int packed) {
+        return new Date(packed);
+    }
+
+    /**
+     * Replaces the clock today's date is read from, such as with a fixed clock in tests.
+     * The cached date is dropped, so the next check reads the new clock.
+     * @param source The clock to read today's date from.
+     */
+    public static void setClock(Clock source) {
+        clock = source;
+        today = null;
+    }
+
+    /**
+     * Today's packed date. Reads the clock's millis on every call, and only converts them to a
+     * calendar date once per day.
+     * @return Today's date, packed by pack().
+     */
+    static int today() {
+        Clock source = clock;
+        Today cached = today;
+        long now = source.millis();
+        if (cached == null || cached.clock() != source || now < cached.from() || now >= cached.until()) {
+            ZoneId zone = source.getZone();
+            LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(now), zone);
+            cached = new Today(source, pack(date.getYear(), date.getMonthValue(), date.getDayOfMonth()),
+                    date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli());
+            today = cached;
+        }
+        return cached.packed();
+    }
+
+    /**
+     * Packs a year, month and day into one int of the form yyyymmdd, e.g. 20000219 for 2/19/2000.
+     * Packed dates compare in calendar order and are used to look accounts up without building a Date.
+     * @param year The year, from 0.
+     * @param month The month, from 0 to 99; it is not checked against the calendar.
+     * @param day The day, from 0 to 99; it is not checked against the calendar.
+     * @return The packed date.
+     * @throws NumberFormatException if a field does not fit its digits.
+     */
+    public static int pack(int year, int month, int day) {
+        if (!fits(year, month, day)) {
+            throw new NumberFormatException("Date out of range: " + month + "/" + day + "/" + year);
+        }
+        return (year * 100 + month) * 100 + day;
+    }
+
+    /**
+     * Checks whether a year, month and day fit the yyyymmdd form.
+     * @return true if pack() accepts them.
+     */
+    private static boolean fits(int year, int month, int day) {
+        return year >= 0 && year <= MAX_PACKED_YEAR && month >= 0 && month <= 99 && day >= 0 && day <= 99;
+    }
+
+    /**
+     * Parses a date in the form of "xx/xx/xxxx" straight into a packed date.
+     * Reads the fields the way Date(String) does, without building Strings.
+     * @param date The date text.
+     * @return The packed date.
+     * @throws NumberFormatException if a field is not a number or does not fit pack().
+     * @throws NoSuchElementException if there are fewer than three fields.
+     */
+    public static int parsePacked(CharSequence date) {
+        return parse(date, true);
+    }
+
+    /**
+     * Reads the month, day and year fields of a date separated by runs of '/'; fields after the year are ignored.
+     * @param date The date text.
+     * @param strict true to throw when the fields do not fit pack(), false to return INVALID.
+     * @return The packed date.
+     */
+    private static int parse(CharSequence date, boolean strict) {
+        int month = 0;
+        int day = 0;
+        int year = 0;
+        int i = 0;
+        int length = date.length();
+        for (int field = 0; field < 3; field++) {
+            while (i < length && date.charAt(i) == '/') {
+                i++;
+            }
+            if (i == length) {
+                throw new NoSuchElementException();
+            }
+            int start = i;
+            while (i < length && date.charAt(i) != '/') {
+                i++;
+            }
+            int value = Integer.parseInt(date, start, i, 10);
+            if (field == 0) {
+                month = value;
+            }
+            else if (field == 1) {
+                day = value;
+            }
+            else {
+                year = value;
+            }
+        }
+        if (!strict && !fits(year, month, day)) {
+            return INVALID;
+        }
+        return pack(year, month, day);
+    }
+
+    /**
+     * Basic getter for the year of a packed date.
+     * @param packed A date packed by pack().
+     * @return The year.
+     */
+    public static int yearOf(int packed) {
+        return packed / 10_000;
+    }
+
+    /**
+     * Basic getter for the month of a packed date.
+     * @param packed A date packed by pack().
+     * @return The month.
+     */
+    public static int monthOf(int packed) {
+        return packed / 100 % 100;
+    }
+
+    /**
+     * Basic getter for the day of a packed date.
+     * @param packed A date packed by pack().
+     * @return The day.
+     */
+    public static int dayOf(int packed) {
+        return packed % 100;
+    }
+
+    /**
+     * This Date in the yyyymmdd form of pack().
+     * @return The packed date.
+     */
+    public int packed() {
+        return packed;
     }
 
     /**
@@ -49,7 +227,7 @@ public class Date implements Comparable<Date> {
      @return An integer representing the Date's day.
      */
     public int getDay() {
-        return day;
+        return dayOf(packed);
     }
 
     /**
@@ -57,7 +235,7 @@ public class Date implements Comparable<Date> {
      @return An integer representing the Date's month.
      */
     public int getMonth() {
-        return month;
+        return monthOf(packed);
     }
 
     /**
@@ -65,7 +243,7 @@ public class Date implements Comparable<Date> {
      @return An integer representing the Date's year.
      */
     public int getYear() {
-        return year;
+        return yearOf(packed);
     }
 
     /**
@@ -86,15 +264,34 @@ public class Date implements Comparable<Date> {
      */
     @Override
     public int compareTo(Date otherDate) {
-        int yearComp = Integer.compare(this.year, otherDate.year);
-        if (yearComp != 0) {
-            return yearComp;
+        return Integer.compare(this.packed, otherDate.packed);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Two Dates are equal when they fall on the same year, month and day, matching compareTo().
+     * @param obj The object to be compared to.
+     * @return True if obj is a Date on the same day, otherwise false.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
         }
-        int monthComp= Integer.compare(this.month, otherDate.month);
-        if (monthComp != 0) {
-            return monthComp;
+        if (!(obj instanceof Date other)) {
+            return false;
         }
-        return Integer.compare(this.day, otherDate.day);
+        return this.packed == other.packed;
+    }
+
+    /**
+     * {@inheritDoc}
+     * Consistent with equals(), so Dates can be used in hash-based lookups.
+     * @return The packed date, which is also what lookups by packed date of birth hash.
+     */
+    @Override
+    public int hashCode() {
+        return packed;
     }
 
     /**
@@ -104,89 +301,57 @@ public class Date implements Comparable<Date> {
      * @return 0 for a valid date, 1 for an invalid date, 2 for future or present day, 3 for a date more than 6 months away.
      */
     public int isValid(){
+        return isValid(this.packed);
+    }
+
+    /**
+     * Checks the validity of a packed date, without building a Date.
+     * @param packed A date packed by pack().
+     * @return The same codes as isValid().
+     */
+    public static int isValid(int packed){
+        int year = yearOf(packed);
+        int month = monthOf(packed);
+        int day = dayOf(packed);
 
-        if (this.month < FIRST_MONTH || this.month > LAST_MONTH || this.day < FIRST_DAY || this.year > NEXT_YEAR)
+        if (month < FIRST_MONTH || month > LAST_MONTH || day < FIRST_DAY || year > NEXT_YEAR)
             return 1;
 
-        int[] dayMonth = {0, ODD_DAYS_MONTH, DAYS_FEB + isLeapYear(),
-                ODD_DAYS_MONTH, EVEN_DAYS_MONTH, ODD_DAYS_MONTH,
-                EVEN_DAYS_MONTH, ODD_DAYS_MONTH, ODD_DAYS_MONTH,
-                EVEN_DAYS_MONTH, ODD_DAYS_MONTH, EVEN_DAYS_MONTH,
-                ODD_DAYS_MONTH};
-        if (checkDate() && this.day > dayMonth[month]){
+        int daysInMonth = DAYS_IN_MONTH[month] + (month == 2 ? isLeapYear(year) : 0);
+        int currDate = today();
+        if (packed > currDate && day > daysInMonth){
             return 1;
         }
-        if (checkDate() || checkToday())
+        if (packed >= currDate)
             return 2;
 
-        if(this.day <= dayMonth[month])
+        if(day <= daysInMonth)
             return 0;
         else{
             return 1;
         }
     }
 
-    /**
-     * Used by isValid() to check if the Date is a future date.
-     * @return True if the Date is a future date, otherwise false.
-     */
-    private boolean checkDate(){
-        Date currDate = new Date();
-        if (this.year > currDate.year) {
-            return true;
-        } else {
-            if (this.year == currDate.year) {
-                if (this.month > currDate.month) {
-                    return true;
-                } else {
-                    if (this.month == currDate.month) {
-                        return this.day > currDate.day;
-                    } else {
-                        return false;
-                    }
-                }
-            } else {
-                return false;
-            }
-        }
-    }
-
     /**
      * Used by createDate() in Transaction Manager to calculate the age from the given DOB.
      * @return age
      */
     public int checkAge(){
-        Calendar curr = Calendar.getInstance();
-        int age = curr.get(Calendar.YEAR) - this.year;
-        if(curr.get(Calendar.MONTH)+1 > this.month)
-            return age;
-        else if(curr.get(Calendar.MONTH)+1<this.month)
+        int currDate = today();
+        int age = yearOf(currDate) - yearOf(this.packed);
+        if (currDate % 10_000 < this.packed % 10_000) //birthday is later in the year
             return age-1;
-        else{
-            if(curr.get(Calendar.DAY_OF_MONTH) < this.day){
-                return age-1;
-            }else{
-                return age;
-            }
-        }
+        return age;
     }
 
     /**
-     * Used by checkToday() in isValid to check if the date is the current day.
-     * @return true for if it is the current day. False if it is not.
-     */
-    private boolean checkToday(){
-        Date currDate = new Date();
-        return this.year == currDate.year && this.month == currDate.month && this.day == currDate.day;
-    }
-    /**
-     * Checks if a Date instance is part of a leap year.
-     * @return True if it is a leap year, otherwise false.
+     * Checks if a year is a leap year.
+     * @return 1 if it is a leap year, otherwise 0.
      */
-    private int isLeapYear() {
-        if (this.year % QUADRENNIAL == 0) {
-            if (this.year % CENTENNIAL == 0) {
-                if(this.year % QUATERCENTENNIAL==0)
+    private static int isLeapYear(int year) {
+        if (year % QUADRENNIAL == 0) {
+            if (year % CENTENNIAL == 0) {
+                if(year % QUATERCENTENNIAL==0)
                     return 1;
                 else{
                     return 0;
@@ -1,10 +1,23 @@
+package rubank;
+
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import rubank.Date;
 
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class DateTest {
 
+    @AfterEach
+    void restore_System_Clock() {
+        Date.setClock(Clock.systemDefaultZone());
+    }
+
     @Test
     void invalid_Calendar_Month_Returns_1() {
         Date testDate = new Date("13/01/2003");
@@ -46,4 +59,26 @@ class DateTest {
         Date testDate = new Date("02/29/2000");
         assertEquals(0, testDate.isValid());
     }
+
+    @Test
+    void today_Follows_A_Fixed_Clock() {
+        Date.setClock(Clock.fixed(Instant.parse("2023-06-15T12:00:00Z"), ZoneOffset.UTC));
+        assertEquals(2, new Date("6/15/2023").isValid());
+        assertEquals(2, new Date("6/16/2023").isValid());
+        assertEquals(0, new Date("6/14/2023").isValid());
+    }
+
+    @Test
+    void age_Turns_Over_On_The_Birthday() {
+        Date.setClock(Clock.fixed(Instant.parse("2023-06-15T12:00:00Z"), ZoneOffset.UTC));
+        assertEquals(16, new Date("6/15/2007").checkAge());
+        assertEquals(15, new Date("6/16/2007").checkAge());
+    }
+
+    @Test
+    void compare_Packed_Dates_In_Calendar_Order() {
+        assertEquals(20000219, new Date("2/19/2000").packed());
+        assertTrue(new Date("12/31/1999").compareTo(new Date("1/1/2000")) < 0);
+        assertEquals(new Date("02/09/2000"), new Date("2/9/2000"));
+    }
 }
\ No newline at end of file
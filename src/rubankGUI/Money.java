@@ -0,0 +1,144 @@
+package rubank;
+
+import java.text.DecimalFormat;
+
+/**
+ Fixed-point money helpers. Amounts are whole cents held in a long, so adding fees
+ and interest is exact and never drifts the way double arithmetic does.
+ Rates are annual and expressed in basis points (1% = 100).
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public final class Money {
+    public static final long CENTS_PER_DOLLAR = 100;
+    public static final long BASIS_POINTS = 10_000; // basis points in 100%
+    public static final int MONTHS_PER_YEAR = 12;
+    private static final int MAX_PLAIN_DIGITS = 17; // digits parseCents() reads itself before a long could overflow
+
+    private static final ThreadLocal<DecimalFormat> FORMATTER =
+            ThreadLocal.withInitial(() -> (DecimalFormat) DecimalFormat.getCurrencyInstance());
+
+    private Money() {
+    }
+
+    /**
+     Converts a dollar amount to cents, rounding to the nearest cent.
+     @param dollars the amount in dollars, e.g. 599.99
+     @return the amount in cents, e.g. 59999
+     */
+    public static long toCents(double dollars) {
+        return Math.round(dollars * CENTS_PER_DOLLAR);
+    }
+
+    /**
+     Converts an amount in cents to dollars, for display only.
+     @param cents the amount in cents.
+     @return the amount in dollars.
+     */
+    public static double toDollars(long cents) {
+        return cents / (double) CENTS_PER_DOLLAR;
+    }
+
+    /**
+     Parses a dollar amount typed by the user into cents.
+     Accepts the same input as Double.parseDouble(), then rounds to the nearest cent, half up.
+     Plain amounts such as "100.5" or "-3" are read digit by digit without building a String;
+     anything else, such as "1e3", goes through Double.parseDouble().
+     @param amount the amount, e.g. "100.5"
+     @return the amount in cents.
+     @throws NumberFormatException if amount is not a number.
+     */
+    public static long parseCents(CharSequence amount) {
+        int length = amount.length();
+        int i = 0;
+        boolean negative = false;
+        if (length > 0 && (amount.charAt(0) == '-' || amount.charAt(0) == '+')) {
+            negative = amount.charAt(0) == '-';
+            i++;
+        }
+        long cents = 0;
+        int digits = 0;
+        int fraction = -1; // digits read after the point, or -1 before it
+        boolean roundUp = false;
+        for (; i < length; i++) {
+            char c = amount.charAt(i);
+            if (c == '.' && fraction < 0) {
+                fraction = 0;
+            }
+            else if (c >= '0' && c <= '9') {
+                digits++;
+                if (fraction < 0 || fraction < 2) {
+                    if (digits > MAX_PLAIN_DIGITS) {
+                        return toCents(Double.parseDouble(amount.toString()));
+                    }
+                    cents = cents * 10 + (c - '0');
+                }
+                else if (fraction == 2) {
+                    roundUp = c >= '5';
+                }
+                if (fraction >= 0) {
+                    fraction++;
+                }
+            }
+            else {
+                return toCents(Double.parseDouble(amount.toString()));
+            }
+        }
+        if (digits == 0) {
+            return toCents(Double.parseDouble(amount.toString()));
+        }
+        for (int scale = Math.max(fraction, 0); scale < 2; scale++) {
+            cents *= 10;
+        }
+        if (roundUp) {
+            cents++;
+        }
+        return negative ? -cents : cents;
+    }
+
+    /**
+     Calculates one month of interest on a balance at an annual rate.
+     @param cents the balance in cents.
+     @param annualRate the annual rate in basis points.
+     @return the monthly interest in cents, rounded half-even.
+     */
+    public static long monthlyInterest(long cents, long annualRate) {
+        return mulDiv(cents, annualRate, BASIS_POINTS * MONTHS_PER_YEAR);
+    }
+
+    /**
+     Calculates value * numerator / denominator exactly and rounds half-even (banker's rounding) to a whole number.
+     @param value the value to be scaled.
+     @param numerator the numerator of the scale factor.
+     @param denominator the denominator of the scale factor, greater than 0.
+     @return the rounded result.
+     @throws ArithmeticException if value * numerator overflows a long.
+     */
+    public static long mulDiv(long value, long numerator, long denominator) {
+        long product = Math.multiplyExact(value, numerator);
+        long quotient = Math.floorDiv(product, denominator);
+        long twiceRemainder = 2 * (product - quotient * denominator);
+        if (twiceRemainder > denominator || (twiceRemainder == denominator && (quotient & 1) != 0)) {
+            quotient++;
+        }
+        return quotient;
+    }
+
+    /**
+     Formats an amount in cents as currency in the default locale, e.g. "$1,234.50".
+     Reuses one formatter per thread instead of building a new one on every call.
+     @param cents the amount in cents.
+     @return the formatted amount.
+     */
+    public static String format(long cents) {
+        return FORMATTER.get().format(toDollars(cents));
+    }
+
+    /**
+     Returns this thread's cached currency formatter. DecimalFormat is not thread-safe,
+     so the instance must not be handed to another thread.
+     @return the currency formatter for the default locale.
+     */
+    public static DecimalFormat formatter() {
+        return FORMATTER.get();
+    }
+}
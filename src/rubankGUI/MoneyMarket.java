@@ -1,20 +1,39 @@
-import rubank.Account;
+package rubank;
+
+import rubank.AccountKind;
+import rubank.Money;
 import rubank.Profile;
+import rubank.RateTable;
 import rubank.Savings;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.text.DecimalFormat;
 
 /**
  Implements methods for calculating monthly interests and fees specific to the characteristics of a money market account
  Custom String representations to sort accounts.
  Inherited from Savings
+ The balance, withdrawal count and loyalty live together in one long state word, so a withdrawal
+ checks the balance, drops the loyalty and counts itself in a single compare-and-set.
+ The inherited balance and isLoyal fields are not used.
  @author Dany Chucri, Madhur Nutulapati
  */
 public class MoneyMarket extends Savings {
-    private int withdrawal; //number of withdrawals
-    private static final double MONTHLY_FEE = 25.0;
-    private static final double INT_RATE = 0.045;
-    private static final double LOYALTY_INT_RATE = 0.0475;
+    private long state; //balance in cents << 16 | withdrawals << 1 | loyalty bit; updated through STATE
+    public static final long MIN_BALANCE = 200_000; //$2000.00, in cents; also the loyalty threshold
+    private static final int BALANCE_SHIFT = 16;
+    private static final int MAX_WITHDRAWALS = 0x7fff; //the count stops here rather than wrapping into the balance
+
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(MoneyMarket.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
     /**
      Creates an instance of Money Market.
      @param holder The profile class object holder.
@@ -23,7 +42,71 @@ public class MoneyMarket extends Savings {
 
     public MoneyMarket(Profile holder, double balance){
         super(holder, balance, true);
-        this.withdrawal = 0;
+        STATE.setVolatile(this, pack(Money.toCents(balance), 0, true));
+    }
+
+    /**
+     Packs a balance, withdrawal count and loyalty into a state word.
+     @param balance the balance in cents.
+     @param withdrawals the number of withdrawals this month.
+     @param loyal the loyal customer status.
+     @return the state word.
+     @throws ArithmeticException if the balance does not fit in 48 bits.
+     */
+    static long pack(long balance, int withdrawals, boolean loyal) {
+        if (balance << BALANCE_SHIFT >> BALANCE_SHIFT != balance) {
+            throw new ArithmeticException("Money Market balance out of range: " + balance);
+        }
+        long count = Math.min(Math.max(withdrawals, 0), MAX_WITHDRAWALS);
+        return balance << BALANCE_SHIFT | count << 1 | (loyal ? 1 : 0);
+    }
+
+    /**
+     Unpacks the balance of a state word.
+     @param state the state word.
+     @return the balance in cents.
+     */
+    static long balanceOf(long state) {
+        return state >> BALANCE_SHIFT;
+    }
+
+    /**
+     Unpacks the withdrawal count of a state word.
+     @param state the state word.
+     @return the number of withdrawals this month.
+     */
+    static int withdrawalsOf(long state) {
+        return (int) (state >>> 1) & MAX_WITHDRAWALS;
+    }
+
+    /**
+     Unpacks the loyalty of a state word.
+     @param state the state word.
+     @return the loyal customer status.
+     */
+    static boolean loyalOf(long state) {
+        return (state & 1) != 0;
+    }
+
+    /**
+     Basic getter for the balance, in cents.
+     @return the balance in cents.
+     */
+    @Override
+    public long getBalanceCents() {
+        return balanceOf(word());
+    }
+
+    /**
+     Basic setter for the balance, in cents; the withdrawal count and loyalty are kept.
+     @param newBalance the new balance in cents.
+     */
+    @Override
+    public void setBalanceCents(long newBalance) {
+        long current = word();
+        while (!compareAndSetWord(current, pack(newBalance, withdrawalsOf(current), loyalOf(current)))) {
+            current = word();
+        }
     }
 
     /**
@@ -31,7 +114,16 @@ public class MoneyMarket extends Savings {
      @return withdrawals
      */
     public int getWithdrawals() {
-        return withdrawal;
+        return withdrawalsOf(word());
+    }
+
+    /**
+     * Basic getter for the loyalty status of the account
+     * @return true if loyal, false if not
+     */
+    @Override
+    public boolean getLoyalty() {
+        return loyalOf(word());
     }
 
     /**
@@ -39,14 +131,20 @@ public class MoneyMarket extends Savings {
      @param newLoyalty the new loyalty value.
      */
     public void setLoyalty(boolean newLoyalty) {
-        isLoyal = newLoyalty;
+        long current = word();
+        while (!compareAndSetWord(current, pack(balanceOf(current), withdrawalsOf(current), newLoyalty))) {
+            current = word();
+        }
     }
 
     /**
      Basic helper method to increment the withdrawal
      */
     public void incWithdrawal() {
-        withdrawal++;
+        long current = word();
+        while (!compareAndSetWord(current, pack(balanceOf(current), withdrawalsOf(current) + 1, loyalOf(current)))) {
+            current = word();
+        }
     }
 
     /**
@@ -54,74 +152,127 @@ public class MoneyMarket extends Savings {
      @param x the amount you want to set withdrawal to .
      */
     public void setWithdrawal (int x) {
-        withdrawal = x;
+        long current = word();
+        while (!compareAndSetWord(current, pack(balanceOf(current), x, loyalOf(current)))) {
+            current = word();
+        }
     }
 
     /**
-     Calculates monthly interest with respect to Money Market account criteria.
-     @return the balance with monthly interest
+     Deposits an amount in one compare-and-set, making the account loyal once the balance reaches MIN_BALANCE.
+     @param amountCents the amount to deposit, in cents.
+     @return the balance after the deposit, in cents.
+     @throws ArithmeticException if the balance would overflow.
      */
     @Override
-    public double monthlyInterest() {
-        double monthlyInt;
-        if (isLoyal) {
-            monthlyInt = balance * (LOYALTY_INT_RATE / 12);
+    public long depositCents(long amountCents) {
+        while (true) {
+            long current = word();
+            long next = Math.addExact(balanceOf(current), amountCents);
+            boolean loyal = loyalOf(current) || next >= MIN_BALANCE;
+            if (compareAndSetWord(current, pack(next, withdrawalsOf(current), loyal))) {
+                return next;
+            }
         }
-        else {
-            monthlyInt = balance * (INT_RATE / 12);
+    }
+
+    /**
+     Withdraws an amount in one compare-and-set: the insufficient-funds check, the loss of loyalty
+     below MIN_BALANCE and the withdrawal count all apply to the same state.
+     @param amountCents the amount to withdraw, in cents.
+     @return true if the amount was withdrawn, false if insufficient fund.
+     */
+    @Override
+    public boolean withdrawCents(long amountCents) {
+        while (true) {
+            long current = word();
+            long next = balanceOf(current) - amountCents;
+            if (next < 0) {
+                return false;
+            }
+            boolean loyal = loyalOf(current) && next >= MIN_BALANCE;
+            if (compareAndSetWord(current, pack(next, withdrawalsOf(current) + 1, loyal))) {
+                return true;
+            }
         }
-        return monthlyInt;
+    }
+
+    /**
+     The state word holding the balance, withdrawal count and loyalty, read atomically.
+     @return the current state word.
+     */
+    @Override
+    long word() {
+        return (long) STATE.getVolatile(this);
+    }
+
+    /**
+     Replaces the state word if it still holds the expected value.
+     @param expected the word read earlier.
+     @param next the word to store.
+     @return true if the word was replaced.
+     */
+    @Override
+    boolean compareAndSetWord(long expected, long next) {
+        return STATE.compareAndSet(this, expected, next);
+    }
+
+    /**
+     One month of fee and interest applied to a state word; the withdrawal count starts over.
+     @param word a state word read by word().
+     @param rates the rate table of the month-end.
+     @return the state word after month end.
+     */
+    @Override
+    long monthEndWord(long word, RateTable rates) {
+        long balance = balanceOf(word);
+        boolean loyal = loyalOf(word);
+        return pack(rates.product(AccountKind.MONEY_MARKET)
+                .monthEndCents(balance, withdrawalsOf(word), loyal), 0, loyal);
+    }
+
+    /**
+     Calculates monthly interest with respect to Money Market account criteria.
+     @return the monthly interest in cents
+     */
+    @Override
+    public long monthlyInterestCents() {
+        long current = word();
+        return RateTable.current().product(AccountKind.MONEY_MARKET).interestCents(balanceOf(current), loyalOf(current));
     }
 
     /**
      Calculates monthly fee with respect to Money Market account criteria.
-     @return the monthly fee if your balance is less than 2000 and 3 + withdrawals monthly fee +10.
-     Otherwise, Monthly fee if balance < 2000.0
-     Or if withdrawal more than 3 times than return 10.0 or return 0.0
+     @return the monthly fee in cents, by the installed RateTable: the monthly fee under the minimum balance,
+     plus the excess withdrawal fee after the free withdrawals
      */
     @Override
-    public double monthlyFee(){
-        if (balance < 2000.0 && withdrawal > 3) {
-            return MONTHLY_FEE + 10.0;
-        }
-        else if (balance < 2000.0) {
-            return MONTHLY_FEE;
-        }
-        else if (withdrawal > 3) {
-            return 10.0;
-        }
-        return 0.0;
+    public long monthlyFeeCents(){
+        long current = word();
+        return RateTable.current().product(AccountKind.MONEY_MARKET).feeCents(balanceOf(current), withdrawalsOf(current));
     }
 
     /**
-     method formats and returns a string representation of a Money Market account,
+     method formats and appends a string representation of a Money Market account,
      including the holder's name, date of birth, and balance.
-     @return formatted string
+     @param row the builder the representation is appended to.
+     @param formatter the currency formatter for the balance.
+     @param current the state word holding the balance, withdrawal count and loyalty.
      */
     @Override
-    public String toString() {
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getCurrencyInstance();
-        String writtenBalance = formatter.format(balance);
-        String loyalty = "";
-        if (isLoyal) loyalty += "::is loyal";
-        return "Money Market::Savings::" + holder.getFname() + " " + holder.getLname() + " " + holder.getDOB() + "::Balance " + writtenBalance + loyalty + "::withdrawal: " + withdrawal;
+    void appendTo(StringBuilder row, DecimalFormat formatter, long current) {
+        row.append("Money Market::Savings::");
+        appendHolderAndBalance(row, formatter, balanceOf(current));
+        if (loyalOf(current)) row.append("::is loyal");
+        row.append("::withdrawal: ").append(withdrawalsOf(current));
     }
 
     /**
-     Compares two Money Market accounts based on their account type.
-     @param obj is the other account obj being compared.
-     @return int indicating the comparison = 0 if equal and negative value if not equal.
+     Basic getter for the kind of this Money Market account.
+     @return AccountKind.MONEY_MARKET
      */
     @Override
-    public int compareTo(Account obj) {
-        String thisAccountType = this.toString();
-        String oAccType = obj.toString();
-        thisAccountType = thisAccountType.substring(0, thisAccountType.indexOf("::"));
-        oAccType = oAccType.substring(0, oAccType.indexOf("::"));
-        int accTypeCompare = thisAccountType.compareTo(oAccType);
-        if (accTypeCompare != 0) {
-            return accTypeCompare;
-        }
-        return this.holder.compareTo(obj.holder);
+    public AccountKind getKind() {
+        return AccountKind.MONEY_MARKET;
     }
 }
@@ -0,0 +1,115 @@
+package rubank;
+
+import rubank.AccountColumns;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the month-end fee and interest update over AccountColumns on a ForkJoinPool.
+ * The rows are split into partitions of at most grain rows; each partition computes, applies and
+ * writes back its own accounts. Every row depends only on its own state, so the result is
+ * the same as a sequential run no matter how the rows are split or scheduled.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public class MonthEndEngine {
+    public static final int DEFAULT_GRAIN = 16_384; // rows per partition; smaller books run on the calling thread
+
+    private final ForkJoinPool pool; // pool the partitions run on
+    private final int grain; // maximum rows per partition
+
+    /**
+     * Outcome of one month-end run, for sizing the pool against the batch window.
+     * @param accounts The number of accounts updated.
+     * @param elapsedNanos The wall-clock time of the run in nanoseconds.
+     * @param parallelism The parallelism of the pool the run used.
+     */
+    public record Result(int accounts, long elapsedNanos, int parallelism) {
+        /**
+         * Throughput of the run.
+         * @return Accounts updated per second.
+         */
+        public double accountsPerSecond() {
+            if (elapsedNanos == 0) {
+                return 0;
+            }
+            return accounts * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        /**
+         * Represents the Result in the form "month-end: 1000 accounts in 1.234 ms (810373 accounts/s, parallelism 8)".
+         * @return A String in the above form.
+         */
+        @Override
+        public String toString() {
+            return String.format("month-end: %d accounts in %.3f ms (%.0f accounts/s, parallelism %d)",
+                    accounts, elapsedNanos / 1_000_000.0, accountsPerSecond(), parallelism);
+        }
+    }
+
+    /**
+     * Creates an engine on the common ForkJoinPool with the default grain.
+     */
+    public MonthEndEngine() {
+        this(ForkJoinPool.commonPool(), DEFAULT_GRAIN);
+    }
+
+    /**
+     * Creates an engine on a given pool.
+     * @param pool The pool to run partitions on. The caller owns it and shuts it down.
+     * @param grain The maximum number of rows per partition.
+     */
+    public MonthEndEngine(ForkJoinPool pool, int grain) {
+        if (grain < 1) {
+            throw new IllegalArgumentException("Grain must be at least 1: " + grain);
+        }
+        this.pool = pool;
+        this.grain = grain;
+    }
+
+    /**
+     * Computes and applies one month of fees and interest to every row, then writes the rows back to their accounts.
+     * @param columns The captured accounts.
+     * @return The number of accounts, elapsed time and parallelism of the run.
+     */
+    public Result run(AccountColumns columns) {
+        long start = System.nanoTime();
+        if (columns.size() <= grain) {
+            new Partition(columns, 0, columns.size(), grain).compute();
+        }
+        else {
+            pool.invoke(new Partition(columns, 0, columns.size(), grain));
+        }
+        return new Result(columns.size(), System.nanoTime() - start, pool.getParallelism());
+    }
+
+    /**
+     * A range of rows, split in half until it is no larger than the grain.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static class Partition extends RecursiveAction {
+        private final AccountColumns columns;
+        private final int from; // first row, inclusive
+        private final int to; // last row, exclusive
+        private final int grain;
+
+        Partition(AccountColumns columns, int from, int to, int grain) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                columns.computeMonthEnd(from, to);
+                columns.applyMonthEnd(from, to);
+                columns.writeBack(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Partition(columns, from, mid, grain), new Partition(columns, mid, to, grain));
+        }
+    }
+}
@@ -1,14 +1,27 @@
+package rubank;
+
 import rubank.Date;
 
 /**
  represents a user profile with first name, last name, and date of birth attributes.
  Implements compareTo method to compare
+ The case-folded names, a 64-bit hash and the packed date of birth are computed once when the
+ profile is created, so comparing and hashing profiles does not fold a character.
+ An AccountDatabase keeps one Profile object per holder, shared by all of the holder's accounts.
  @author Dany Chucri, Madhur Nutulapati
  */
 public class Profile implements Comparable<Profile> {
     private final String fname; // First name of the account holder
     private final String lname; // Last name of the account holder
     private final Date dob; // Date of birth of the account holder
+    private final String foldedFname; // first name case-folded the way compareToIgnoreCase() compares it
+    private final String foldedLname; // last name case-folded the way compareToIgnoreCase() compares it
+    private final int packedDob; // date of birth packed by Date.pack()
+    private final long hash64; // hash of the folded names and the date of birth
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long NAME_SEPARATOR = 0x2f; // mixed in between the names, so "ab c" and "a bc" hash apart
 
     /**
      Creates an instance of Profile.
@@ -20,6 +33,10 @@ public class Profile implements Comparable<Profile> {
         this.fname = fname;
         this.lname = lname;
         this.dob = dob;
+        this.foldedFname = fold(fname);
+        this.foldedLname = fold(lname);
+        this.packedDob = dob.packed();
+        this.hash64 = hash64(fname, lname, packedDob);
     }
 
     /**
@@ -46,21 +63,154 @@ public class Profile implements Comparable<Profile> {
         return dob;
     }
 
+    /**
+     Basic Getter to retrieve the 64-bit hash of the holder, for hash tables wider than an int.
+     @return hash of the case-folded names and the date of birth.
+     */
+    public long hash64() {
+        return hash64;
+    }
+
     /**
      Compares two profile accounts based on their account type.
+     Names are compared ignoring case, through the case-folded names computed at construction.
      @param obj is the other profile obj being compared.
      @return int indicating the comparison = 0 if equal and negative value if not equal.
      */
     @Override
     public int compareTo(Profile obj) {
-        int lastNCompare = this.lname.compareToIgnoreCase(obj.lname);
+        if (this == obj) {
+            return 0;
+        }
+        int lastNCompare = this.foldedLname.compareTo(obj.foldedLname);
         if (lastNCompare != 0) {
             return lastNCompare;
         }
-        int firstNCompare = this.fname.compareToIgnoreCase(obj.fname);
+        int firstNCompare = this.foldedFname.compareTo(obj.foldedFname);
         if (firstNCompare != 0) {
             return firstNCompare;
         }
-        return this.dob.compareTo(obj.dob);
+        return Integer.compare(this.packedDob, obj.packedDob);
+    }
+
+    /**
+     Two profiles are equal when compareTo() finds them equal: names ignoring case, and the same date of birth.
+     @param obj is the other object being compared.
+     @return true if obj is a Profile for the same holder, otherwise false.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof Profile other)) {
+            return false;
+        }
+        return this.hash64 == other.hash64 && this.packedDob == other.packedDob
+                && this.foldedLname.equals(other.foldedLname) && this.foldedFname.equals(other.foldedFname);
+    }
+
+    /**
+     Hash code consistent with equals(), taken from the precomputed 64-bit hash.
+     @return hash code of the case-folded names and the date of birth.
+     */
+    @Override
+    public int hashCode() {
+        return (int) (hash64 ^ (hash64 >>> 32));
+    }
+
+    /**
+     Checks whether this profile is the holder named by a lookup key, without building a Profile for the key.
+     Agrees with equals(): names are compared ignoring case, and dates by their packed form.
+     @param fname first name to compare with, such as a command token.
+     @param lname last name to compare with.
+     @param packedDob date of birth to compare with, packed by Date.pack().
+     @return true if this profile has those names and date of birth.
+     */
+    public boolean matches(CharSequence fname, CharSequence lname, int packedDob) {
+        return this.packedDob == packedDob && foldedEquals(this.foldedLname, lname) && foldedEquals(this.foldedFname, fname);
+    }
+
+    /**
+     Hashes a holder's names and date of birth the way hashCode() does, so lookup keys can hash
+     command tokens and land in the same bucket as the stored Profile.
+     @param fname first name.
+     @param lname last name.
+     @param packedDob date of birth packed by Date.pack().
+     @return the hash code a Profile with those fields would have.
+     */
+    static int hash(CharSequence fname, CharSequence lname, int packedDob) {
+        long hash = hash64(fname, lname, packedDob);
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     Hashes the case-folded names and the date of birth with 64-bit FNV-1a, then spreads the bits
+     so the low and high halves both depend on every character.
+     @param fname first name.
+     @param lname last name.
+     @param packedDob date of birth packed by Date.pack().
+     @return the 64-bit hash.
+     */
+    private static long hash64(CharSequence fname, CharSequence lname, int packedDob) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < lname.length(); i++) {
+            hash = (hash ^ fold(lname.charAt(i))) * FNV_PRIME;
+        }
+        hash = (hash ^ NAME_SEPARATOR) * FNV_PRIME;
+        for (int i = 0; i < fname.length(); i++) {
+            hash = (hash ^ fold(fname.charAt(i))) * FNV_PRIME;
+        }
+        hash = (hash ^ packedDob) * FNV_PRIME;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    /**
+     Compares a case-folded name with a name that has not been folded.
+     @param folded a name folded by fold(String).
+     @param other the name to compare with.
+     @return true if the names are equal ignoring case.
+     */
+    private static boolean foldedEquals(String folded, CharSequence other) {
+        int length = folded.length();
+        if (length != other.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (folded.charAt(i) != fold(other.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     Case-folds a name, reusing the name itself when folding changes nothing.
+     @param name the name.
+     @return the folded name.
+     */
+    private static String fold(String name) {
+        for (int i = 0; i < name.length(); i++) {
+            if (fold(name.charAt(i)) != name.charAt(i)) {
+                char[] folded = name.toCharArray();
+                for (int j = i; j < folded.length; j++) {
+                    folded[j] = fold(folded[j]);
+                }
+                return new String(folded);
+            }
+        }
+        return name;
+    }
+
+    /**
+     Case-folds one character the way compareToIgnoreCase() compares it.
+     @param c the character.
+     @return the folded character.
+     */
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
     }
 }
\ No newline at end of file
@@ -0,0 +1,355 @@
+package rubank;
+
+import rubank.AccountColumns;
+import rubank.AccountKind;
+import rubank.MoneyMarket;
+import rubank.RateTable;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Projects the balances of AccountColumns a number of months ahead on a ForkJoinPool, without changing any account.
+ * Each month applies the fee and interest of the captured RateTable, as UB would. A projected money market
+ * account turns loyal when its balance reaches MoneyMarket.MIN_BALANCE and stops being loyal below it, the
+ * same rule deposits and withdrawals follow, and only its first month counts the withdrawals already made.
+ * A path whose tier, fee and loyalty stay the same from start to end is computed in closed form:
+ * b(n) = (b - f / r)(1 + r)^n + f / r for a monthly rate r and fee f. The path is monotonic, so matching ends
+ * mean every month in between is in the same regime. Such a path is rounded once rather than every month,
+ * so it drifts from month-by-month UB runs by up to a cent a month; path() gives the exact month-by-month figures.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public class ProjectionEngine {
+    public static final int DEFAULT_GRAIN = MonthEndEngine.DEFAULT_GRAIN; // rows per partition
+    private static final AccountKind[] KINDS = AccountKind.values();
+    private static final double MONTHLY_RATE_SCALE = 120_000.0; // basis points times months per year
+    private static final double MAX_CLOSED_FORM = 1L << 52; // larger balances are iterated, so cents stay exact
+
+    private final ForkJoinPool pool; // pool the partitions run on
+    private final int grain; // maximum rows per partition
+
+    /**
+     * Projected balances of every row of a set of AccountColumns.
+     */
+    public static final class Projection {
+        private final AccountColumns columns; // the captured accounts, which are not changed
+        private final int months;
+        private final long[] balance; // projected balance of each row, in cents
+        private final long[] fees; // total fees of each row over the months, in cents
+        private final boolean[] loyal; // projected loyal customer status of each row
+        private final boolean[] closedForm; // whether each row was computed in closed form
+        private long elapsedNanos;
+        private int parallelism;
+
+        private Projection(AccountColumns columns, int months) {
+            this.columns = columns;
+            this.months = months;
+            balance = new long[columns.size()];
+            fees = new long[columns.size()];
+            loyal = new boolean[columns.size()];
+            closedForm = new boolean[columns.size()];
+        }
+
+        /**
+         * Basic getter for the accounts that were projected.
+         * @return The captured columns, in the state they were captured in.
+         */
+        public AccountColumns columns() {
+            return columns;
+        }
+
+        /**
+         * Basic getter for the number of months projected.
+         * @return The number of months.
+         */
+        public int months() {
+            return months;
+        }
+
+        /**
+         * Basic getter for the projected balance of a row.
+         * @param row The row.
+         * @return The balance in cents after the months.
+         */
+        public long balance(int row) {
+            return balance[row];
+        }
+
+        /**
+         * Basic getter for the total fees of a row over the months.
+         * @param row The row.
+         * @return The fees in cents.
+         */
+        public long fees(int row) {
+            return fees[row];
+        }
+
+        /**
+         * Basic getter for the total interest of a row over the months.
+         * @param row The row.
+         * @return The interest in cents.
+         */
+        public long interest(int row) {
+            return balance[row] - columns.balance(row) + fees[row];
+        }
+
+        /**
+         * Basic getter for the projected loyal customer status of a row.
+         * @param row The row.
+         * @return true if loyal after the months.
+         */
+        public boolean loyal(int row) {
+            return loyal[row];
+        }
+
+        /**
+         * Basic getter for how a row was computed.
+         * @param row The row.
+         * @return true if in closed form, false if month by month.
+         */
+        public boolean closedForm(int row) {
+            return closedForm[row];
+        }
+
+        /**
+         * Counts the rows computed in closed form.
+         * @return The number of rows.
+         */
+        public int closedFormRows() {
+            int count = 0;
+            for (boolean row : closedForm) {
+                if (row) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Computes the balance of a row at the end of every month, month by month.
+         * @param row The row.
+         * @return The balances in cents, starting with the captured balance at index 0.
+         */
+        public long[] path(int row) {
+            RateTable.Product product = columns.rates().product(columns.kind(row));
+            boolean moneyMarket = columns.kind(row) == AccountKind.MONEY_MARKET;
+            long[] path = new long[months + 1];
+            long cents = columns.balance(row);
+            boolean isLoyal = columns.loyal(row);
+            int withdrawals = columns.withdrawals(row);
+            path[0] = cents;
+            for (int month = 1; month <= months; month++) {
+                cents = product.monthEndCents(cents, withdrawals, isLoyal);
+                withdrawals = 0;
+                if (moneyMarket) {
+                    isLoyal = cents >= MoneyMarket.MIN_BALANCE;
+                }
+                path[month] = cents;
+            }
+            return path;
+        }
+
+        /**
+         * Basic getter for the wall-clock time of the projection.
+         * @return The elapsed time in nanoseconds.
+         */
+        public long elapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Basic getter for the parallelism of the pool the projection ran on.
+         * @return The parallelism.
+         */
+        public int parallelism() {
+            return parallelism;
+        }
+
+        /**
+         * Represents the Projection in the form "projection: 1000 accounts, 12 months, 990 closed form in 1.234 ms (parallelism 8)".
+         * @return A String in the above form.
+         */
+        @Override
+        public String toString() {
+            return String.format("projection: %d accounts, %d months, %d closed form in %.3f ms (parallelism %d)",
+                    balance.length, months, closedFormRows(), elapsedNanos / 1_000_000.0, parallelism);
+        }
+    }
+
+    /**
+     * Creates an engine on the common ForkJoinPool with the default grain.
+     */
+    public ProjectionEngine() {
+        this(ForkJoinPool.commonPool(), DEFAULT_GRAIN);
+    }
+
+    /**
+     * Creates an engine on a given pool.
+     * @param pool The pool to run partitions on. The caller owns it and shuts it down.
+     * @param grain The maximum number of rows per partition.
+     */
+    public ProjectionEngine(ForkJoinPool pool, int grain) {
+        if (grain < 1) {
+            throw new IllegalArgumentException("Grain must be at least 1: " + grain);
+        }
+        this.pool = pool;
+        this.grain = grain;
+    }
+
+    /**
+     * Projects every row a number of months ahead. The columns and their accounts are only read.
+     * @param columns The captured accounts.
+     * @param months The number of months, at least 1.
+     * @return The projected balances.
+     */
+    public Projection run(AccountColumns columns, int months) {
+        if (months < 1) {
+            throw new IllegalArgumentException("Months must be at least 1: " + months);
+        }
+        long start = System.nanoTime();
+        Projection projection = new Projection(columns, months);
+        if (columns.size() <= grain) {
+            new Partition(projection, 0, columns.size(), grain).compute();
+        }
+        else {
+            pool.invoke(new Partition(projection, 0, columns.size(), grain));
+        }
+        projection.elapsedNanos = System.nanoTime() - start;
+        projection.parallelism = pool.getParallelism();
+        return projection;
+    }
+
+    /**
+     * Projects a range of rows, one pass per account kind.
+     * @param projection The projection to fill in.
+     * @param from The first row, inclusive.
+     * @param to The last row, exclusive.
+     */
+    static void project(Projection projection, int from, int to) {
+        AccountColumns columns = projection.columns;
+        for (int k = 0; k < KINDS.length; k++) {
+            int start = Math.max(from, columns.kindStart(KINDS[k]));
+            int end = Math.min(to, k + 1 < KINDS.length ? columns.kindStart(KINDS[k + 1]) : columns.size());
+            boolean moneyMarket = KINDS[k] == AccountKind.MONEY_MARKET;
+            RateTable.Product product = columns.rates().product(KINDS[k]);
+            for (int row = start; row < end; row++) {
+                projectRow(projection, product, moneyMarket, row);
+            }
+        }
+    }
+
+    /**
+     * Projects one row: month by month until its withdrawals are counted, then in closed form if the path is
+     * stable, otherwise month by month to the end.
+     * @param projection The projection to fill in.
+     * @param product The rules of the row's kind.
+     * @param moneyMarket Whether loyalty follows the balance.
+     * @param row The row.
+     */
+    private static void projectRow(Projection projection, RateTable.Product product, boolean moneyMarket, int row) {
+        AccountColumns columns = projection.columns;
+        long cents = columns.balance(row);
+        boolean isLoyal = columns.loyal(row);
+        long fees = 0;
+        int month = 0;
+        int withdrawals = columns.withdrawals(row);
+        if (withdrawals > 0) {
+            long fee = product.feeCents(cents, withdrawals);
+            cents = cents - fee + product.interestCents(cents, isLoyal);
+            fees += fee;
+            month++;
+            if (moneyMarket) {
+                isLoyal = cents >= MoneyMarket.MIN_BALANCE;
+            }
+        }
+        int remaining = projection.months - month;
+        if (remaining > 0 && (!moneyMarket || isLoyal == cents >= MoneyMarket.MIN_BALANCE)) {
+            long end = closedForm(product, cents, isLoyal, remaining);
+            if (end != Long.MIN_VALUE && sameRegime(product, moneyMarket, cents, end)) {
+                projection.balance[row] = end;
+                projection.fees[row] = fees + remaining * product.feeCents(cents, 0);
+                projection.loyal[row] = isLoyal;
+                projection.closedForm[row] = true;
+                return;
+            }
+        }
+        for (; month < projection.months; month++) {
+            long fee = product.feeCents(cents, 0);
+            cents = cents - fee + product.interestCents(cents, isLoyal);
+            fees += fee;
+            if (moneyMarket) {
+                isLoyal = cents >= MoneyMarket.MIN_BALANCE;
+            }
+        }
+        projection.balance[row] = cents;
+        projection.fees[row] = fees;
+        projection.loyal[row] = isLoyal;
+    }
+
+    /**
+     * Computes the balance after a number of months at a fixed rate and fee, in closed form.
+     * @param product The rules of the row's kind.
+     * @param cents The starting balance in cents.
+     * @param loyal The loyal customer status for the whole path.
+     * @param months The number of months.
+     * @return The balance in cents, or Long.MIN_VALUE if it is too large to compute exactly.
+     */
+    private static long closedForm(RateTable.Product product, long cents, boolean loyal, int months) {
+        double rate = product.rate(product.tierOf(cents), loyal) / MONTHLY_RATE_SCALE;
+        double fee = product.feeCents(cents, 0);
+        double end;
+        if (rate == 0) {
+            end = cents - months * fee;
+        }
+        else {
+            double fixedPoint = fee / rate;
+            end = (cents - fixedPoint) * Math.pow(1 + rate, months) + fixedPoint;
+        }
+        if (!(Math.abs(end) < MAX_CLOSED_FORM) || Math.abs(cents) >= MAX_CLOSED_FORM) {
+            return Long.MIN_VALUE;
+        }
+        return Math.round(end);
+    }
+
+    /**
+     * Checks whether two balances get the same tier, fee and, for a money market account, loyalty.
+     * @param product The rules of the row's kind.
+     * @param moneyMarket Whether loyalty follows the balance.
+     * @param first One balance in cents.
+     * @param second The other balance in cents.
+     * @return true if both are in the same regime.
+     */
+    private static boolean sameRegime(RateTable.Product product, boolean moneyMarket, long first, long second) {
+        return product.tierOf(first) == product.tierOf(second)
+                && product.feeCents(first, 0) == product.feeCents(second, 0)
+                && (!moneyMarket || (first >= MoneyMarket.MIN_BALANCE) == (second >= MoneyMarket.MIN_BALANCE));
+    }
+
+    /**
+     * A range of rows, split in half until it is no larger than the grain.
+     */
+    @SuppressWarnings("serial") // never serialized
+    private static class Partition extends RecursiveAction {
+        private final Projection projection;
+        private final int from; // first row, inclusive
+        private final int to; // last row, exclusive
+        private final int grain;
+
+        Partition(Projection projection, int from, int to, int grain) {
+            this.projection = projection;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                project(projection, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Partition(projection, from, mid, grain), new Partition(projection, mid, to, grain));
+        }
+    }
+}
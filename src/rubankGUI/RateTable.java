@@ -0,0 +1,402 @@
+package rubank;
+
+import rubank.AccountKind;
+import rubank.Money;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Table of product definitions, one per account kind, that every fee and interest calculation reads.
+ * A product has a monthly fee waived at or above a balance, an extra fee once the month's withdrawals pass
+ * a free allowance, and interest rates by balance tier, with a separate rate for loyal customers.
+ * The defaults are the bank's published rates. A table can be loaded from a properties file and installed,
+ * so rates change without a recompile; the file only lists what differs from the defaults:
+ * <pre>
+ * # annual rates in basis points (4%), amounts in cents ($25.00, fee waived from $500.00)
+ * savings.rate=400
+ * savings.loyalRate=425
+ * savings.fee=2500
+ * savings.noFeeBalance=50000
+ * money_market.excessWithdrawalFee=1000
+ * money_market.freeWithdrawals=3
+ * # from $10,000.00 a rate of 5% and a loyal rate of 5.25%; more tiers are comma-separated
+ * money_market.tiers=1000000:500:525
+ * </pre>
+ * The file named by the system property rubank.rates is installed by installStartupTable(), which each entry
+ * point calls before any account is touched. An AccountJournal records the
+ * table each month-end ran with and replays the month-end with that table, so installing a new one never
+ * changes a month-end the bank has already acknowledged.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public final class RateTable {
+    public static final String RATES_PROPERTY = "rubank.rates"; // system property naming a rates file
+    private static final AccountKind[] KINDS = AccountKind.values();
+    private static final RateTable DEFAULTS = new RateTable(new Product[] {
+            new Product(1200, 100_000, 0, 0, 100, 100), // Checking: 1%, $12 under $1000
+            new Product(0, 100_000, 0, 0, 100, 100), // College Checking: 1%, no fee
+            new Product(2500, MoneyMarket.MIN_BALANCE, 1000, 3, 450, 475), // Money Market: 4.5%/4.75%, $25 under $2000, $10 after 3 withdrawals
+            new Product(2500, 50_000, 0, 0, 400, 425) // Savings: 4%/4.25%, $25 under $500
+    });
+    private static volatile RateTable current = DEFAULTS;
+
+    private final Product[] products; // indexed by AccountKind ordinal
+
+    /**
+     * The fee and interest rules of one account kind. Amounts are in cents and rates in basis points.
+     */
+    public static final class Product {
+        private final long monthlyFee; // charged while the balance is under noFeeBalance
+        private final long noFeeBalance;
+        private final long excessWithdrawalFee; // charged once withdrawals pass freeWithdrawals
+        private final int freeWithdrawals;
+        private final long[] floors; // lowest balance of each tier, ascending, the first is 0
+        private final long[] rates; // annual rate of each tier
+        private final long[] loyalRates; // annual rate of each tier for a loyal customer
+
+        /**
+         * Creates a product with a single tier.
+         * @param monthlyFee The monthly fee.
+         * @param noFeeBalance The balance from which the monthly fee is waived.
+         * @param excessWithdrawalFee The fee once the month's withdrawals pass the free ones.
+         * @param freeWithdrawals The number of free withdrawals a month.
+         * @param rate The annual rate.
+         * @param loyalRate The annual rate for a loyal customer.
+         */
+        Product(long monthlyFee, long noFeeBalance, long excessWithdrawalFee, int freeWithdrawals,
+                long rate, long loyalRate) {
+            this(monthlyFee, noFeeBalance, excessWithdrawalFee, freeWithdrawals,
+                    new long[] {0}, new long[] {rate}, new long[] {loyalRate});
+        }
+
+        private Product(long monthlyFee, long noFeeBalance, long excessWithdrawalFee, int freeWithdrawals,
+                        long[] floors, long[] rates, long[] loyalRates) {
+            this.monthlyFee = monthlyFee;
+            this.noFeeBalance = noFeeBalance;
+            this.excessWithdrawalFee = excessWithdrawalFee;
+            this.freeWithdrawals = freeWithdrawals;
+            this.floors = floors;
+            this.rates = rates;
+            this.loyalRates = loyalRates;
+        }
+
+        /**
+         * Monthly fee rule.
+         * @param balance The balance in cents.
+         * @param withdrawals The number of withdrawals this month.
+         * @return The monthly fee in cents.
+         */
+        public long feeCents(long balance, int withdrawals) {
+            long fee = balance < noFeeBalance ? monthlyFee : 0;
+            if (withdrawals > freeWithdrawals) {
+                fee += excessWithdrawalFee;
+            }
+            return fee;
+        }
+
+        /**
+         * Monthly interest rule, at the rate of the highest tier the balance reaches.
+         * @param balance The balance in cents.
+         * @param loyal The loyal customer status.
+         * @return The monthly interest in cents.
+         */
+        public long interestCents(long balance, boolean loyal) {
+            return Money.monthlyInterest(balance, rate(tierOf(balance), loyal));
+        }
+
+        /**
+         * Finds the highest tier a balance reaches; a balance below 0 is in the base tier.
+         * @param balance The balance in cents.
+         * @return The tier index, 0 for the base tier.
+         */
+        int tierOf(long balance) {
+            int tier = floors.length - 1;
+            while (tier > 0 && floors[tier] > balance) {
+                tier--;
+            }
+            return tier;
+        }
+
+        /**
+         * Basic getter for the annual rate of a tier.
+         * @param tier The tier index.
+         * @param loyal The loyal customer status.
+         * @return The annual rate in basis points.
+         */
+        long rate(int tier, boolean loyal) {
+            return loyal ? loyalRates[tier] : rates[tier];
+        }
+
+        /**
+         * One month of fee and interest applied to a balance.
+         * @param balance The balance in cents.
+         * @param withdrawals The number of withdrawals this month.
+         * @param loyal The loyal customer status.
+         * @return The balance after month end, in cents.
+         */
+        public long monthEndCents(long balance, int withdrawals, boolean loyal) {
+            return balance - feeCents(balance, withdrawals) + interestCents(balance, loyal);
+        }
+    }
+
+    private RateTable(Product[] products) {
+        this.products = products;
+    }
+
+    /**
+     * Basic getter for the table of the bank's published rates.
+     * @return The default table.
+     */
+    public static RateTable defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Basic getter for the installed table, which the accounts and month-end use.
+     * @return The installed table.
+     */
+    public static RateTable current() {
+        return current;
+    }
+
+    /**
+     * Installs a table. Month-ends already running finish with the table they started with.
+     * @param table The table to use from now on.
+     */
+    public static void install(RateTable table) {
+        current = table;
+    }
+
+    /**
+     * Basic getter for the product of an account kind.
+     * @param kind The account kind.
+     * @return Its fee and interest rules.
+     */
+    public Product product(AccountKind kind) {
+        return products[kind.ordinal()];
+    }
+
+    /**
+     * Size of the table in the form write() puts it.
+     * @return The number of bytes.
+     */
+    int encodedBytes() {
+        int bytes = 0;
+        for (Product product : products) {
+            bytes += 8 + 8 + 8 + 4 + 4 + product.floors.length * (8 + 8 + 8);
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the table in a binary form read() rebuilds it from, for a journal record.
+     * Each product in AccountKind order is its monthly fee, no-fee balance, excess withdrawal fee,
+     * free withdrawals, number of tiers, and each tier's floor, rate and loyal rate.
+     * @param out The buffer to write to, with encodedBytes() remaining.
+     */
+    void write(ByteBuffer out) {
+        for (Product product : products) {
+            out.putLong(product.monthlyFee).putLong(product.noFeeBalance).putLong(product.excessWithdrawalFee);
+            out.putInt(product.freeWithdrawals).putInt(product.floors.length);
+            for (int t = 0; t < product.floors.length; t++) {
+                out.putLong(product.floors[t]).putLong(product.rates[t]).putLong(product.loyalRates[t]);
+            }
+        }
+    }
+
+    /**
+     * Rebuilds a table written by write().
+     * @param in The buffer, positioned at the table.
+     * @return The table.
+     * @throws IllegalArgumentException if the bytes are not a table write() could have written.
+     */
+    static RateTable read(ByteBuffer in) {
+        Product[] products = new Product[KINDS.length];
+        try {
+            for (int k = 0; k < products.length; k++) {
+                long monthlyFee = in.getLong();
+                long noFeeBalance = in.getLong();
+                long excessWithdrawalFee = in.getLong();
+                int freeWithdrawals = in.getInt();
+                int tiers = in.getInt();
+                if (tiers < 1 || tiers > in.remaining() / (8 + 8 + 8)) {
+                    throw new IllegalArgumentException("Invalid number of rate tiers " + tiers);
+                }
+                long[] floors = new long[tiers];
+                long[] rates = new long[tiers];
+                long[] loyalRates = new long[tiers];
+                for (int t = 0; t < tiers; t++) {
+                    floors[t] = in.getLong();
+                    rates[t] = in.getLong();
+                    loyalRates[t] = in.getLong();
+                }
+                products[k] = new Product(monthlyFee, noFeeBalance, excessWithdrawalFee, freeWithdrawals,
+                        floors, rates, loyalRates);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Rate table is cut short", e);
+        }
+        return new RateTable(products);
+    }
+
+    /**
+     * Loads a table from a properties file; every key it leaves out keeps its default.
+     * Keys are the account kind in lower case, a dot and one of rate, loyalRate, fee, noFeeBalance,
+     * excessWithdrawalFee, freeWithdrawals or tiers.
+     * @param file The properties file.
+     * @return The table.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a value is not a non-negative whole number, or a tier is malformed.
+     */
+    public static RateTable load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        return from(properties);
+    }
+
+    /**
+     * Builds a table from properties; every key they leave out keeps its default.
+     * @param properties The properties, keyed as load() describes.
+     * @return The table.
+     * @throws IllegalArgumentException if a value is not a non-negative whole number, or a tier is malformed.
+     */
+    public static RateTable from(Properties properties) {
+        Product[] products = new Product[KINDS.length];
+        for (AccountKind kind : KINDS) {
+            Product base = DEFAULTS.product(kind);
+            String prefix = kind.name().toLowerCase() + ".";
+            long rate = number(properties, prefix + "rate", base.rates[0]);
+            long loyalRate = number(properties, prefix + "loyalRate", base.loyalRates[0]);
+            long[][] tiers = tiers(properties, prefix + "tiers", base, rate, loyalRate);
+            products[kind.ordinal()] = new Product(
+                    number(properties, prefix + "fee", base.monthlyFee),
+                    number(properties, prefix + "noFeeBalance", base.noFeeBalance),
+                    number(properties, prefix + "excessWithdrawalFee", base.excessWithdrawalFee),
+                    Math.toIntExact(number(properties, prefix + "freeWithdrawals", base.freeWithdrawals)),
+                    tiers[0], tiers[1], tiers[2]);
+        }
+        return new RateTable(products);
+    }
+
+    /**
+     * Reads one whole-number entry.
+     * @param properties The properties.
+     * @param key The key.
+     * @param fallback The value if the key is absent.
+     * @return The value.
+     */
+    private static long number(Properties properties, String key, long fallback) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            return fallback;
+        }
+        return parse(key, value.trim());
+    }
+
+    /**
+     * Parses a non-negative whole number.
+     * @param key The key, for the error message.
+     * @param value The text.
+     * @return The number.
+     */
+    private static long parse(String key, String value) {
+        try {
+            long number = Long.parseLong(value);
+            if (number >= 0) {
+                return number;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Invalid rate table entry " + key + "=" + value);
+    }
+
+    /**
+     * Reads the tiers of a product: the base tier at 0, then "floor:rate:loyalRate" entries in ascending order.
+     * @param properties The properties.
+     * @param key The tiers key.
+     * @param base The default product, whose upper tiers are kept if the key is absent.
+     * @param rate The base tier's rate.
+     * @param loyalRate The base tier's loyal rate.
+     * @return The floors, rates and loyal rates.
+     */
+    private static long[][] tiers(Properties properties, String key, Product base, long rate, long loyalRate) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            long[] rates = base.rates.clone();
+            long[] loyalRates = base.loyalRates.clone();
+            rates[0] = rate;
+            loyalRates[0] = loyalRate;
+            return new long[][] {base.floors, rates, loyalRates};
+        }
+        String[] entries = value.isBlank() ? new String[0] : value.split(",");
+        long[] floors = new long[entries.length + 1];
+        long[] rates = new long[entries.length + 1];
+        long[] loyalRates = new long[entries.length + 1];
+        rates[0] = rate;
+        loyalRates[0] = loyalRate;
+        for (int i = 0; i < entries.length; i++) {
+            String[] fields = entries[i].trim().split(":");
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Invalid rate table entry " + key + "=" + value);
+            }
+            floors[i + 1] = parse(key, fields[0].trim());
+            rates[i + 1] = parse(key, fields[1].trim());
+            loyalRates[i + 1] = parse(key, fields[2].trim());
+            if (floors[i + 1] <= floors[i]) {
+                throw new IllegalArgumentException("Tiers must be in ascending order of balance: " + key + "=" + value);
+            }
+        }
+        return new long[][] {floors, rates, loyalRates};
+    }
+
+    /**
+     * Loads and installs the file named by the rubank.rates system property, and keeps the defaults if it is
+     * not set. Called by each entry point at startup, so a bad file is reported there rather than by the first
+     * fee or interest calculation.
+     * @throws IOException if the file cannot be read.
+     * @throws IllegalArgumentException if a value is not a non-negative whole number, or a tier is malformed.
+     */
+    public static void installStartupTable() throws IOException {
+        String file = System.getProperty(RATES_PROPERTY);
+        if (file != null) {
+            install(load(Path.of(file)));
+        }
+    }
+
+    /**
+     * Represents the table as the properties that would rebuild it, one product per line.
+     * @return A String in the form "savings.rate=400 savings.loyalRate=425 ...", one line per product.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (AccountKind kind : KINDS) {
+            Product product = product(kind);
+            String prefix = kind.name().toLowerCase() + ".";
+            text.append(prefix).append("rate=").append(product.rates[0])
+                    .append(' ').append(prefix).append("loyalRate=").append(product.loyalRates[0])
+                    .append(' ').append(prefix).append("fee=").append(product.monthlyFee)
+                    .append(' ').append(prefix).append("noFeeBalance=").append(product.noFeeBalance)
+                    .append(' ').append(prefix).append("excessWithdrawalFee=").append(product.excessWithdrawalFee)
+                    .append(' ').append(prefix).append("freeWithdrawals=").append(product.freeWithdrawals);
+            if (product.floors.length > 1) {
+                text.append(' ').append(prefix).append("tiers=");
+                for (int t = 1; t < product.floors.length; t++) {
+                    text.append(t > 1 ? "," : "").append(product.floors[t]).append(':')
+                            .append(product.rates[t]).append(':').append(product.loyalRates[t]);
+                }
+            }
+            text.append(System.lineSeparator());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,187 @@
+package rubank;
+
+import rubank.Account;
+import rubank.Money;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.DecimalFormat;
+
+/**
+ * Streams the rows of the P, PI and UB reports to a buffered Writer.
+ * One row builder and one currency formatter are reused for the whole report, and output is
+ * flushed once per report instead of once per line.
+ * A ReportWriter is used by one thread at a time.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public class ReportWriter implements Flushable, Closeable {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String NEW_LINE = System.lineSeparator();
+
+    private final Writer out; // destination of the report
+    private final boolean ownsOut; // close() closes out only if this writer opened it
+    private final DecimalFormat formatter; // currency formatter reused for every row
+    private final StringBuilder row; // builder reused for every row
+    private char[] chars; // copy of the row handed to out, reused so no String is built per row
+
+    /**
+     * Creates a ReportWriter around a Writer.
+     * @param out The destination; buffer it if it is not buffered already.
+     * @param ownsOut true if close() should close out.
+     */
+    private ReportWriter(Writer out, boolean ownsOut) {
+        this.out = out;
+        this.ownsOut = ownsOut;
+        this.formatter = (DecimalFormat) DecimalFormat.getCurrencyInstance();
+        this.row = new StringBuilder(128);
+        this.chars = new char[128];
+    }
+
+    /**
+     * Creates a ReportWriter to standard output. close() flushes but leaves System.out open.
+     * @return A buffered writer to the console.
+     */
+    public static ReportWriter toConsole() {
+        Writer console = new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()), BUFFER_SIZE);
+        return new ReportWriter(console, false);
+    }
+
+    /**
+     * Creates a ReportWriter to a file, replacing the file if it exists.
+     * @param path The file to write the report to, in UTF-8.
+     * @return A buffered writer to the file; close it when the report is done.
+     * @throws IOException if the file cannot be opened.
+     */
+    public static ReportWriter toFile(Path path) throws IOException {
+        Writer file = new OutputStreamWriter(Files.newOutputStream(path), StandardCharsets.UTF_8);
+        return new ReportWriter(new BufferedWriter(file, BUFFER_SIZE), true);
+    }
+
+    /**
+     * Creates a ReportWriter to a caller-supplied Writer, which the caller closes.
+     * @param out The destination.
+     * @return A writer to out.
+     */
+    public static ReportWriter to(Writer out) {
+        return new ReportWriter(out, false);
+    }
+
+    /**
+     * Writes a line of text.
+     * @param text The text of the line, without the line separator.
+     */
+    public void line(String text) {
+        try {
+            out.write(text);
+            out.write(NEW_LINE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes an account row, as printed by the P and UB reports.
+     * @param account The account to be written.
+     */
+    public void account(Account account) {
+        row.setLength(0);
+        account.appendTo(row, formatter);
+        writeRow();
+    }
+
+    /**
+     * Writes an account row as it was in a captured state, for a report written after the locks are released.
+     * @param account The account to be written.
+     * @param word The account's state word, read with the database's locks held.
+     */
+    void account(Account account, long word) {
+        row.setLength(0);
+        account.appendTo(row, formatter, word);
+        writeRow();
+    }
+
+    /**
+     * Writes an account row followed by its monthly fee and interest, as printed by the PI report.
+     * @param account The account to be written.
+     * @param feeCents The monthly fee in cents.
+     * @param interestCents The monthly interest in cents.
+     */
+    public void accountWithFeeAndInterest(Account account, long feeCents, long interestCents) {
+        row.setLength(0);
+        account.appendTo(row, formatter);
+        row.append("::fee ").append(formatter.format(Money.toDollars(feeCents)));
+        row.append("::monthly interest ").append(formatter.format(Money.toDollars(interestCents)));
+        writeRow();
+    }
+
+    /**
+     * Writes an account row as it was in a captured state, followed by its projected balance and the fees and
+     * interest that lead to it.
+     * @param account The account to be written.
+     * @param word The account's state word when the projection captured it.
+     * @param balanceCents The projected balance in cents.
+     * @param feesCents The total fees in cents.
+     * @param interestCents The total interest in cents.
+     */
+    void accountWithProjection(Account account, long word, long balanceCents, long feesCents, long interestCents) {
+        row.setLength(0);
+        account.appendTo(row, formatter, word);
+        row.append("::projected ").append(formatter.format(Money.toDollars(balanceCents)));
+        row.append("::fees ").append(formatter.format(Money.toDollars(feesCents)));
+        row.append("::interest ").append(formatter.format(Money.toDollars(interestCents)));
+        writeRow();
+    }
+
+    /**
+     * Writes the row builder as one line.
+     */
+    private void writeRow() {
+        row.append(NEW_LINE);
+        int length = row.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        row.getChars(0, length, chars, 0);
+        try {
+            out.write(chars, 0, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes buffered rows to the destination.
+     */
+    @Override
+    public void flush() {
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Flushes buffered rows and closes the destination if this writer opened it.
+     */
+    @Override
+    public void close() {
+        flush();
+        if (ownsOut) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
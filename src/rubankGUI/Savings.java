@@ -1,4 +1,8 @@
+package rubank;
+
 import rubank.Account;
+import rubank.AccountKind;
+import rubank.RateTable;
 import rubank.Profile;
 
 import java.text.DecimalFormat;
@@ -9,9 +13,6 @@ import java.text.DecimalFormat;
  @author Dany Chucri, Madhur Nutulapati
  */
 public class Savings extends Account {
-    private static final double INT_RATE = 0.04;
-    private static final double LOYALTY_INT_RATE = 0.0425;
-    private static final double MONTHLY_FEE = 25.0;
     protected boolean isLoyal; // loyal customer status
 
     /**
@@ -35,63 +36,53 @@ public class Savings extends Account {
 
     /**
      Calculates monthly interest with respect to savings account criteria.
-     @return the balance with monthly interest
+     @return the monthly interest in cents
      */
     @Override
-    public double monthlyInterest(){
-        double monthlyInt;
-        if (isLoyal) {
-            monthlyInt = balance * (LOYALTY_INT_RATE / 12);
-        }
-        else {
-            monthlyInt = balance * (INT_RATE / 12);
-        }
-        return monthlyInt;
+    public long monthlyInterestCents(){
+        return RateTable.current().product(AccountKind.SAVINGS).interestCents(balance, isLoyal);
     }
 
     /**
      Calculates monthly fee with respect to Savings account criteria.
-     @return the monthly fee or no fee if balance greater than or equal to 500
+     @return the monthly fee in cents, by the installed RateTable
      */
     @Override
-    public double monthlyFee(){
-        if (balance >= 500.0) {
-            return 0.0;
-        }
-        else{
-            return MONTHLY_FEE;
-        }
+    public long monthlyFeeCents(){
+        return RateTable.current().product(AccountKind.SAVINGS).feeCents(balance, 0);
     }
 
     /**
-     method formats and returns a string representation of a savings account,
+     method formats and appends a string representation of a savings account,
      including the holder's name, date of birth, and balance.
-     @return formatted string
+     @param row the builder the representation is appended to.
+     @param formatter the currency formatter for the balance.
+     @param word the state word, which is the balance in cents.
+     */
+    @Override
+    void appendTo(StringBuilder row, DecimalFormat formatter, long word) {
+        row.append("Savings::");
+        appendHolderAndBalance(row, formatter, word);
+        if (isLoyal) row.append("::is loyal");
+    }
+
+    /**
+     Basic getter for the kind of this Savings account.
+     @return AccountKind.SAVINGS
      */
     @Override
-    public String toString() {
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getCurrencyInstance();
-        String writtenBalance = formatter.format(balance);
-        String loyalty = "";
-        if (isLoyal) loyalty += "::is loyal";
-        return "Savings::" + holder.getFname() + " " + holder.getLname() + " " + holder.getDOB() + "::Balance " + writtenBalance + loyalty;
+    public AccountKind getKind() {
+        return AccountKind.SAVINGS;
     }
 
     /**
-     Compares two Savings accounts based on their account type.
-     @param obj is the other account obj being compared.
-     @return int indicating the comparison = 0 if equal and negative value if not equal.
+     One month of this account's fee and interest applied to a balance.
+     @param word the balance in cents.
+     @param rates the rate table of the month-end.
+     @return the balance after the fee and interest, in cents.
      */
     @Override
-    public int compareTo(Account obj) {
-        String thisAccountType = this.toString();
-        String oAccType = obj.toString();
-        thisAccountType = thisAccountType.substring(0, thisAccountType.indexOf("::"));
-        oAccType = oAccType.substring(0, oAccType.indexOf("::"));
-        int accTypeCompare = thisAccountType.compareTo(oAccType);
-        if (accTypeCompare != 0) {
-            return accTypeCompare;
-        }
-        return this.holder.compareTo(obj.holder);
+    long monthEndWord(long word, RateTable rates) {
+        return rates.product(AccountKind.SAVINGS).monthEndCents(word, 0, isLoyal);
     }
-}
\ No newline at end of file
+}
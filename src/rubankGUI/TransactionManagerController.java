@@ -1,17 +1,243 @@
 package rubankGUI;
 import javafx.fxml.FXML;
-import javafx.scene.control.Button;
+import javafx.scene.Group;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.DatePicker;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.RadioButton;
+import javafx.scene.control.TextArea;
 import javafx.scene.control.TextField;
+import javafx.scene.control.Toggle;
+import javafx.scene.control.ToggleGroup;
+import javafx.stage.FileChooser;
+import rubank.AccountDatabase;
+import rubank.AccountLoader;
+import src.rubank.TransactionManager;
 
+import java.io.File;
+import java.time.LocalDate;
+
+/**
+ * Controller for TransactionManagerView.fxml.
+ * Each button builds the same command line the console takes and hands it to a TransactionManager session,
+ * so the GUI validates and replies exactly as the console does. The commands run on a UiCommandExecutor,
+ * never on the JavaFX Application Thread, so P, PI and UB over a large book do not freeze the window.
+ * @author Dany Chucri, Madhur Nutulapati
+ */
 public class TransactionManagerController {
+    private static final int REPORT_FRAME_LINES = 4; // lines a report prints around its accounts
+
+    private final AccountDatabase accountDatabase = new AccountDatabase(); // only used on the executor's worker
+    private UiCommandExecutor executor; // runs the commands in the background
+
+    @FXML
+    private TextField firstName, lastName, initialDeposit, firstName1, lastName1, amount;
+
+    @FXML
+    private DatePicker dateOfBirth, dateOfBirth1;
+
+    @FXML
+    private ToggleGroup AccountType, AccountType1, Campus;
+
+    @FXML
+    private Group campusGroup;
+
+    @FXML
+    private CheckBox loyalCustomer;
+
+    @FXML
+    private TextArea output;
+
+    @FXML
+    private ProgressBar progress;
+
+    /**
+     * Sets up the executor and enables the campus and loyalty choices only for the accounts that have them.
+     */
+    @FXML
+    public void initialize() {
+        executor = new UiCommandExecutor(output, progress);
+        AccountType.selectedToggleProperty().addListener((observable, before, selected) -> {
+            String code = codeOf(selected);
+            campusGroup.setDisable(!"CC".equals(code));
+            loyalCustomer.setDisable(!"S".equals(code));
+        });
+    }
+
+    /**
+     * Opens the account described on the Open/Close tab.
+     */
     @FXML
-    private TextField inputField;
+    public void handleOpen() {
+        String command = "O " + codeOf(AccountType.getSelectedToggle()) + " " + firstName.getText() + " "
+                + lastName.getText() + " " + dateOf(dateOfBirth) + " " + initialDeposit.getText();
+        Toggle campus = Campus.getSelectedToggle();
+        if ("CC".equals(codeOf(AccountType.getSelectedToggle())) && campus != null) {
+            command += " " + campusCodeOf(campus);
+        }
+        else if ("S".equals(codeOf(AccountType.getSelectedToggle()))) {
+            command += loyalCustomer.isSelected() ? " 1" : " 0";
+        }
+        run(command);
+    }
 
+    /**
+     * Closes the account described on the Open/Close tab.
+     */
     @FXML
-    private Button submitButton;
+    public void handleClose() {
+        run("C " + codeOf(AccountType.getSelectedToggle()) + " " + firstName.getText() + " "
+                + lastName.getText() + " " + dateOf(dateOfBirth));
+    }
 
+    /**
+     * Clears the Open/Close tab.
+     */
     @FXML
-    public void handleButtonClick() {
-        String inputText = inputField.getText();
-   }
+    public void handleClear() {
+        firstName.clear();
+        lastName.clear();
+        initialDeposit.clear();
+        dateOfBirth.setValue(null);
+        AccountType.selectToggle(null);
+        Campus.selectToggle(null);
+        loyalCustomer.setSelected(false);
+    }
+
+    /**
+     * Deposits into the account described on the Deposit/Withdraw tab.
+     */
+    @FXML
+    public void handleDeposit() {
+        run("D " + transaction());
+    }
+
+    /**
+     * Withdraws from the account described on the Deposit/Withdraw tab.
+     */
+    @FXML
+    public void handleWithdraw() {
+        run("W " + transaction());
+    }
+
+    /**
+     * Prints every account, sorted by account type and profile.
+     */
+    @FXML
+    public void handlePrint() {
+        report("P");
+    }
+
+    /**
+     * Prints the fees and interests of every account.
+     */
+    @FXML
+    public void handlePrintFeesAndInterests() {
+        report("PI");
+    }
+
+    /**
+     * Applies the month's fees and interests, then prints the updated balances.
+     */
+    @FXML
+    public void handleUpdateBalances() {
+        report("UB");
+    }
+
+    /**
+     * Loads accounts from a file chosen by the user with AccountLoader, then prints what was rejected.
+     */
+    @FXML
+    public void handleLoad() {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Load Accounts From File");
+        File file = chooser.showOpenDialog(output.getScene().getWindow());
+        if (file == null) {
+            return;
+        }
+        executor.submit(out -> {
+            AccountLoader.Result result = new AccountLoader().load(file.toPath(), accountDatabase);
+            out.println(result.opened() + " accounts loaded from " + file.getName() + ".");
+            for (AccountLoader.Rejection rejection : result.rejected()) {
+                out.println(rejection);
+            }
+        });
+    }
+
+    /**
+     * Stops the executor; called when the window closes.
+     */
+    public void shutdown() {
+        executor.close();
+    }
+
+    /**
+     * Runs a command on the executor.
+     * @param command The command line.
+     */
+    private void run(String command) {
+        executor.submit(out -> new TransactionManager(accountDatabase, out).execute(command));
+    }
+
+    /**
+     * Runs a report command on the executor, with progress measured against the number of accounts.
+     * @param command P, PI or UB.
+     */
+    private void report(String command) {
+        executor.submit(out -> new TransactionManager(accountDatabase, out).execute(command),
+                () -> accountDatabase.getNumAcct() + REPORT_FRAME_LINES);
+    }
+
+    /**
+     * Builds the part of a D or W command after the command itself from the Deposit/Withdraw tab.
+     * @return The account type, holder and amount, such as "C John Doe 2/19/2000 100".
+     */
+    private String transaction() {
+        return codeOf(AccountType1.getSelectedToggle()) + " " + firstName1.getText() + " "
+                + lastName1.getText() + " " + dateOf(dateOfBirth1) + " " + amount.getText();
+    }
+
+    /**
+     * To retrieve the command code of the selected account type.
+     * @param toggle The selected account type radio button, or null.
+     * @return C, CC, MM or S; or an empty String if nothing is selected, which leaves the command short.
+     */
+    private static String codeOf(Toggle toggle) {
+        if (toggle == null) {
+            return "";
+        }
+        return switch (((RadioButton) toggle).getText()) {
+            case "Checking" -> "C";
+            case "College Checking" -> "CC";
+            case "Money Market" -> "MM";
+            case "Savings" -> "S";
+            default -> "";
+        };
+    }
+
+    /**
+     * To retrieve the campus code of the selected campus, as the O command takes it.
+     * @param toggle The selected campus radio button.
+     * @return 0 for NB, 1 for Newark, 2 for Camden.
+     */
+    private static int campusCodeOf(Toggle toggle) {
+        return switch (((RadioButton) toggle).getText()) {
+            case "Newark" -> 1;
+            case "Camden" -> 2;
+            default -> 0;
+        };
+    }
+
+    /**
+     * To format the picked date the way the commands take it, "2/19/2000".
+     * @param picker The date picker.
+     * @return The date, or an empty String if none is picked, which leaves the command short.
+     */
+    private static String dateOf(DatePicker picker) {
+        LocalDate date = picker.getValue();
+        if (date == null) {
+            return "";
+        }
+        return date.getMonthValue() + "/" + date.getDayOfMonth() + "/" + date.getYear();
+    }
 }
@@ -4,14 +4,21 @@ import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
+import src.rubank.TransactionManager;
 
 public class TransactionManagerMain extends Application {
     public static void main(String[] args) {
+        if (!TransactionManager.installRates(System.err)) {
+            System.exit(1);
+        }
         launch(args);
     }
     @Override
     public void start(Stage primaryStage) throws Exception {
-        Parent root = FXMLLoader.load(getClass().getResource("TransactionManagerView.fxml"));
+        FXMLLoader loader = new FXMLLoader(getClass().getResource("TransactionManagerView.fxml"));
+        Parent root = loader.load();
+        TransactionManagerController controller = loader.getController();
+        primaryStage.setOnHidden(event -> controller.shutdown());
         Scene scene = new Scene(root);
         primaryStage.setTitle("Transaction Manager");
         primaryStage.setScene(scene);
@@ -0,0 +1,225 @@
+package rubankGUI;
+import javafx.application.Platform;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.TextArea;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs the GUI's database work off the JavaFX Application Thread and feeds its output back to the window.
+ * Jobs run one at a time, in the order they are submitted, on a background worker; month-end and file
+ * loading fan out from there onto the common ForkJoinPool as they do on the console.
+ * A job prints to a stream whose bytes are buffered here. At most one Platform.runLater is outstanding
+ * at a time, and each one appends a bounded slice of complete lines to the text area and updates the
+ * progress bar, so a report over a large book reaches the window in frame-sized batches instead of one
+ * event per line. The worker waits when the window falls too far behind, which bounds the buffer.
+ * @author Dany Chucri, Madhur Nutulapati
+ */
+public class UiCommandExecutor implements Closeable {
+    private static final int MAX_BYTES_PER_UPDATE = 32 * 1024; // text appended per runLater, so a frame stays short
+    private static final int MAX_PENDING_BYTES = 1 << 20; // the worker waits while this much output is undisplayed
+    private static final int MAX_SHOWN_CHARS = 1 << 20; // the oldest output is dropped from the text area beyond this
+    private static final int OUTPUT_BUFFER = 8192; // output reaches the window in pieces of about this size
+    private static final double INDETERMINATE = ProgressBar.INDETERMINATE_PROGRESS;
+
+    private final TextArea output; // where job output is shown
+    private final ProgressBar progress; // progress of the running job
+    private final ExecutorService worker; // runs the jobs in order
+    private final PrintStream out; // jobs print here
+    private final AtomicBoolean updateScheduled = new AtomicBoolean(); // a runLater is outstanding
+
+    private final Object lock = new Object(); // guards pending and pendingCount
+    private byte[] pending = new byte[OUTPUT_BUFFER]; // output not yet shown, in UTF-8
+    private int pendingCount; // number of bytes in pending
+
+    private volatile long linesWritten; // lines printed by the running job
+    private volatile long linesExpected; // lines the running job is expected to print, or 0 if unknown
+    private volatile boolean busy; // a job is running
+
+    /**
+     * A piece of work to run in the background.
+     */
+    @FunctionalInterface
+    public interface Job {
+        /**
+         * Runs the job.
+         * @param out Where the job prints its replies and reports.
+         * @throws Exception if the job fails; the message is printed.
+         */
+        void run(PrintStream out) throws Exception;
+    }
+
+    /**
+     * Creates an executor that shows output in a text area and progress in a progress bar.
+     * @param output The text area.
+     * @param progress The progress bar.
+     */
+    public UiCommandExecutor(TextArea output, ProgressBar progress) {
+        this.output = output;
+        this.progress = progress;
+        this.worker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "transaction-manager-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.out = new PrintStream(new BufferedOutputStream(new Sink(), OUTPUT_BUFFER), false, StandardCharsets.UTF_8);
+        progress.setProgress(0);
+    }
+
+    /**
+     * Queues a job whose length is unknown; the progress bar shows activity until it finishes.
+     * @param job The job.
+     */
+    public void submit(Job job) {
+        worker.execute(() -> run(job, 0));
+    }
+
+    /**
+     * Queues a job whose expected number of lines is only known once it starts, such as a report whose
+     * length depends on the database at the time it runs.
+     * @param job The job.
+     * @param expectedLines Computes the lines the job prints, on the worker, just before it runs.
+     */
+    public void submit(Job job, LongSupplier expectedLines) {
+        worker.execute(() -> run(job, expectedLines.getAsLong()));
+    }
+
+    /**
+     * Runs one job on the worker and reports its failure, if any.
+     * @param job The job.
+     * @param expectedLines The lines the job prints, or 0 if unknown.
+     */
+    private void run(Job job, long expectedLines) {
+        linesWritten = 0;
+        linesExpected = expectedLines;
+        busy = true;
+        scheduleUpdate();
+        try {
+            job.run(out);
+        } catch (Exception e) {
+            out.println("Error: " + e.getMessage());
+        } finally {
+            out.flush();
+            busy = false;
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * Posts an update to the JavaFX Application Thread unless one is already outstanding.
+     */
+    private void scheduleUpdate() {
+        if (updateScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::update);
+        }
+    }
+
+    /**
+     * Appends the next slice of complete lines to the text area and updates the progress bar.
+     * Runs on the JavaFX Application Thread, and posts itself again while output is left.
+     */
+    private void update() {
+        updateScheduled.set(false); // changes from here on post another update
+        String text = null;
+        boolean more;
+        synchronized (lock) {
+            int end = lastNewLine(Math.min(pendingCount, MAX_BYTES_PER_UPDATE));
+            if (end < 0) {
+                end = lastNewLine(pendingCount); // a line longer than one slice goes out whole
+            }
+            if (end >= 0) {
+                text = new String(pending, 0, end + 1, StandardCharsets.UTF_8);
+                pendingCount -= end + 1;
+                System.arraycopy(pending, end + 1, pending, 0, pendingCount);
+                lock.notifyAll();
+            }
+            more = lastNewLine(pendingCount) >= 0;
+        }
+        if (text != null) {
+            output.appendText(text);
+            int excess = output.getLength() - MAX_SHOWN_CHARS;
+            if (excess > 0) {
+                output.deleteText(0, excess);
+            }
+        }
+        if (busy) {
+            long expected = linesExpected;
+            progress.setProgress(expected > 0 ? Math.min(1.0, (double) linesWritten / expected) : INDETERMINATE);
+        }
+        else {
+            progress.setProgress(0);
+        }
+        if (more) {
+            scheduleUpdate();
+        }
+    }
+
+    /**
+     * Finds the last line break among the first bytes of pending output. Line breaks never occur inside
+     * a multi-byte UTF-8 character, so the bytes up to one always decode cleanly.
+     * @param limit The number of bytes to search.
+     * @return The index of the last '\n' before limit, or -1 if there is none.
+     */
+    private int lastNewLine(int limit) {
+        for (int i = limit - 1; i >= 0; i--) {
+            if (pending[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stops the worker. A running job is interrupted; queued jobs are dropped.
+     */
+    @Override
+    public void close() {
+        worker.shutdownNow();
+    }
+
+    /**
+     * Collects the worker's output for the JavaFX Application Thread and counts its lines.
+     */
+    private class Sink extends OutputStream {
+        @Override
+        public void write(int b) {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int off, int len) {
+            long lines = 0;
+            for (int i = off; i < off + len; i++) {
+                if (bytes[i] == '\n') {
+                    lines++;
+                }
+            }
+            synchronized (lock) {
+                while (pendingCount >= MAX_PENDING_BYTES) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return; // closing; the rest of the output is dropped
+                    }
+                }
+                if (pendingCount + len > pending.length) {
+                    pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingCount + len));
+                }
+                System.arraycopy(bytes, off, pending, pendingCount, len);
+                pendingCount += len;
+            }
+            linesWritten += lines;
+            scheduleUpdate();
+        }
+    }
+}
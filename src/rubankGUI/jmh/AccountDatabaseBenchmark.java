@@ -0,0 +1,112 @@
+package rubank;
+
+import rubank.Account;
+import rubank.AccountDatabase;
+import rubank.ReportWriter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the AccountDatabase operations behind each command on books of 1k to 10M accounts, with the
+ * accounts touched drawn uniformly or Zipf-skewed so both a cold and a cache-friendly hot set are covered.
+ * O/C, lookup, D and W are measured as throughput per operation; P and PI walk the whole book and are
+ * measured as time per report, written to a null writer so only formatting is counted.
+ * P iterates the sorted view, which replaced selectionSortAccounts().
+ * The 10M book needs about 4 GB of heap.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class AccountDatabaseBenchmark {
+    private static final int DRAWS = 1 << 16; // accounts touched, cycled through
+    private static final int FRESH = 1024; // accounts opened and closed again, not in the book
+    private static final long AMOUNT = 100; // $1.00, in cents
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public Books.Distribution distribution;
+
+    private Books book;
+    private AccountDatabase database;
+    private int[] picks; // indexes of the accounts touched, in order
+    private Account[] fresh; // opened and closed by openClose()
+    private int next; // position in picks and fresh
+
+    @Setup
+    public void setUp() {
+        book = new Books(size + FRESH);
+        database = book.open(size);
+        fresh = new Account[FRESH];
+        for (int i = 0; i < FRESH; i++) {
+            fresh[i] = book.account(size + i);
+        }
+        picks = Books.draw(size, distribution, DRAWS, 42);
+    }
+
+    private int pick() {
+        return picks[next++ & (DRAWS - 1)];
+    }
+
+    @Benchmark
+    public boolean openClose() {
+        Account account = fresh[next++ & (FRESH - 1)];
+        database.open(account);
+        return database.close(account);
+    }
+
+    @Benchmark
+    public boolean find() {
+        int i = pick();
+        return database.contains(book.kinds[i], book.fnames[i], book.lnames[i], book.dobs[i]);
+    }
+
+    @Benchmark
+    public AccountDatabase.Outcome deposit() {
+        int i = pick();
+        return database.deposit(book.kinds[i], book.fnames[i], book.lnames[i], book.dobs[i], AMOUNT);
+    }
+
+    @Benchmark
+    public AccountDatabase.Outcome depositWithdraw() {
+        int i = pick();
+        database.deposit(book.kinds[i], book.fnames[i], book.lnames[i], book.dobs[i], AMOUNT);
+        return database.withdraw(book.kinds[i], book.fnames[i], book.lnames[i], book.dobs[i], AMOUNT);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void printSorted() {
+        try (ReportWriter out = ReportWriter.to(Writer.nullWriter())) {
+            database.printSorted(out);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void printFeesAndInterests() {
+        try (ReportWriter out = ReportWriter.to(Writer.nullWriter())) {
+            database.printFeesAndInterests(out);
+        }
+    }
+}
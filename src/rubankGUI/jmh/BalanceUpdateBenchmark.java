@@ -0,0 +1,117 @@
+package rubank;
+
+import rubank.Account;
+import rubank.AccountDatabase;
+import rubank.AccountKind;
+import rubank.Checking;
+import rubank.Date;
+import rubank.MoneyMarket;
+import rubank.Profile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares the lock-free compare-and-set balance update with lock-based ones, with every thread
+ * hitting the same Money Market account, which is the worst case for both.
+ * The account-level pairs isolate the update itself; the database-level pairs add the key lookup
+ * and show what a D or W command pays in a striped versus a lock-free database.
+ * Each withdrawal is paired with a deposit of the same amount, so the balance never runs out.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class BalanceUpdateBenchmark {
+    private static final long AMOUNT = 100; // $1.00, in cents
+    private static final String FNAME = "Jane";
+    private static final String LNAME = "Doe";
+
+    @Param({"MONEY_MARKET", "CHECKING"})
+    public AccountKind kind;
+
+    private Account casAccount; // updated with depositCents() and withdrawCents()
+    private Account lockedAccount; // updated with get and set under lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private AccountDatabase striped;
+    private AccountDatabase lockFree;
+    private int dob; // packed date of birth of the holder
+
+    @Setup
+    public void setUp() {
+        casAccount = newAccount();
+        lockedAccount = newAccount();
+        striped = AccountDatabase.concurrent(16);
+        striped.open(newAccount());
+        lockFree = AccountDatabase.lockFree(16);
+        lockFree.open(newAccount());
+        dob = Date.pack(1990, 1, 1);
+    }
+
+    private Account newAccount() {
+        Profile holder = new Profile(FNAME, LNAME, new Date("1/1/1990"));
+        return kind == AccountKind.MONEY_MARKET ? new MoneyMarket(holder, 5000) : new Checking(holder, 5000);
+    }
+
+    @Benchmark
+    public boolean casDepositWithdraw() {
+        casAccount.depositCents(AMOUNT);
+        return casAccount.withdrawCents(AMOUNT);
+    }
+
+    @Benchmark
+    public boolean lockedDepositWithdraw() {
+        lock.lock();
+        try {
+            lockedAccount.setBalanceCents(lockedAccount.getBalanceCents() + AMOUNT);
+        } finally {
+            lock.unlock();
+        }
+        lock.lock();
+        try {
+            long newBalance = lockedAccount.getBalanceCents() - AMOUNT;
+            if (newBalance < 0) {
+                return false;
+            }
+            lockedAccount.setBalanceCents(newBalance);
+            if (lockedAccount instanceof MoneyMarket acc) {
+                if (newBalance < MoneyMarket.MIN_BALANCE && acc.getLoyalty()) {
+                    acc.setLoyalty(false);
+                }
+                acc.incWithdrawal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Benchmark
+    public AccountDatabase.Outcome stripedDatabase() {
+        striped.deposit(kind, FNAME, LNAME, dob, AMOUNT);
+        return striped.withdraw(kind, FNAME, LNAME, dob, AMOUNT);
+    }
+
+    @Benchmark
+    public AccountDatabase.Outcome lockFreeDatabase() {
+        lockFree.deposit(kind, FNAME, LNAME, dob, AMOUNT);
+        return lockFree.withdraw(kind, FNAME, LNAME, dob, AMOUNT);
+    }
+}
@@ -0,0 +1,115 @@
+package rubank;
+
+import rubank.Account;
+import rubank.AccountDatabase;
+import rubank.AccountKind;
+import rubank.Campus;
+import rubank.Checking;
+import rubank.CollegeChecking;
+import rubank.Date;
+import rubank.MoneyMarket;
+import rubank.Profile;
+import rubank.Savings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Builds synthetic account books for the benchmarks, and the sequences of accounts they touch.
+ * Account i belongs to holder "F{i} L{i % 1000}" with a date of birth spread over 1950-1999 and
+ * a kind cycling through Checking, College Checking, Savings and Money Market, so every holder is
+ * unique and the sorted order is unrelated to the order of opening.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+public final class Books {
+    private static final AccountKind[] KINDS = {
+            AccountKind.CHECKING, AccountKind.COLLEGE_CHECKING, AccountKind.SAVINGS, AccountKind.MONEY_MARKET};
+    private static final int HOT_SPREAD = 1_000_003; // prime; scatters the hottest holders across the book
+
+    /**
+     * How the accounts a benchmark touches are drawn from the book.
+     */
+    public enum Distribution {
+        UNIFORM, // every account equally likely
+        ZIPF // the account of rank k is drawn with probability proportional to 1/k
+    }
+
+    final String[] fnames; // first name of the holder of each account
+    final String[] lnames; // last name of the holder of each account
+    final int[] dobs; // packed date of birth of the holder of each account
+    final AccountKind[] kinds; // kind of each account
+
+    /**
+     * Generates the keys of a book without opening anything.
+     * @param size The number of accounts.
+     */
+    Books(int size) {
+        fnames = new String[size];
+        lnames = new String[size];
+        dobs = new int[size];
+        kinds = new AccountKind[size];
+        for (int i = 0; i < size; i++) {
+            fnames[i] = "F" + i;
+            lnames[i] = "L" + (i % 1000);
+            dobs[i] = Date.pack(1950 + i % 50, 1 + i % 12, 1 + i % 28);
+            kinds[i] = KINDS[i & 3];
+        }
+    }
+
+    /**
+     * Creates the account with the given index, with a balance large enough for every kind.
+     * @param i The index.
+     * @return The account; each call returns a new one.
+     */
+    Account account(int i) {
+        Profile holder = new Profile(fnames[i], lnames[i], Date.ofPacked(dobs[i]));
+        return switch (kinds[i]) {
+            case CHECKING -> new Checking(holder, 5000);
+            case COLLEGE_CHECKING -> new CollegeChecking(holder, 5000, Campus.NEW_BRUNSWICK);
+            case SAVINGS -> new Savings(holder, 5000, (i & 4) == 0);
+            case MONEY_MARKET -> new MoneyMarket(holder, 5000);
+        };
+    }
+
+    /**
+     * Opens the first accounts of the book in a new single-threaded database with one openAll() call.
+     * @param count The number of accounts to open; the rest of the book stays unopened.
+     * @return The database, with room for the whole book.
+     */
+    AccountDatabase open(int count) {
+        AccountDatabase database = new AccountDatabase(fnames.length);
+        List<Account> batch = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            batch.add(account(i));
+        }
+        database.openAll(batch);
+        return database;
+    }
+
+    /**
+     * Draws the indexes of the accounts a benchmark touches, in order.
+     * Zipf ranks are drawn by inverting the continuous approximation of the harmonic CDF, and rank k is
+     * mapped to account (k * a large prime) mod size, so the hot accounts are not neighbours in the book.
+     * @param size The number of accounts to draw from.
+     * @param distribution The distribution to draw from.
+     * @param count The number of draws; a power of two, so a benchmark can wrap around with a mask.
+     * @param seed The seed, fixed so every run touches the same accounts.
+     * @return The account indexes.
+     */
+    static int[] draw(int size, Distribution distribution, int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] picks = new int[count];
+        double logSize = Math.log(size + 1.0);
+        for (int i = 0; i < count; i++) {
+            if (distribution == Distribution.UNIFORM) {
+                picks[i] = random.nextInt(size);
+            }
+            else {
+                long rank = (long) Math.exp(random.nextDouble() * logSize) - 1; // 0 is the hottest
+                picks[i] = (int) (Math.min(rank, size - 1) * HOT_SPREAD % size);
+            }
+        }
+        return picks;
+    }
+}
@@ -0,0 +1,65 @@
+package rubank;
+
+import rubank.Date;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures Date.isValid() and the parsing every O command does before it, over a mix of valid dates,
+ * impossible calendar dates such as 2/30 and 2/29 of a common year, and future dates.
+ @author Dany Chucri, Madhur Nutulapati
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateBenchmark {
+    private static final int DATES = 1 << 12; // dates cycled through
+
+    private String[] texts; // dates as the O command reads them
+    private Date[] dates; // the same dates, parsed
+    private int next; // position in texts and dates
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        texts = new String[DATES];
+        dates = new Date[DATES];
+        for (int i = 0; i < DATES; i++) {
+            int month = 1 + random.nextInt(13); // 13 is invalid
+            int day = 1 + random.nextInt(31); // past the end of short months is invalid
+            int year = 1900 + random.nextInt(200); // past the current year is in the future
+            texts[i] = month + "/" + day + "/" + year;
+            dates[i] = new Date(texts[i]);
+        }
+    }
+
+    @Benchmark
+    public int isValid() {
+        return dates[next++ & (DATES - 1)].isValid();
+    }
+
+    @Benchmark
+    public int parseAndValidate() {
+        return new Date(texts[next++ & (DATES - 1)]).isValid();
+    }
+
+    @Benchmark
+    public int parsePacked() {
+        return Date.parsePacked(texts[next++ & (DATES - 1)]);
+    }
+}
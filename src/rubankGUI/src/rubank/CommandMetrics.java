@@ -0,0 +1,392 @@
+package src.rubank;
+
+import java.io.Closeable;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Latency histograms per command and counters per outcome, shared by every TransactionManager session.
+ * Each histogram is log-linear: exact below 8 ns, then 8 buckets per power of two, so a percentile is
+ * reported within 12.5% of the true value. Recording is a few atomic increments into preallocated arrays,
+ * with no allocation and no lock, so it stays on under load. Each thread records into one of several stripes
+ * picked by its id, and the totals are LongAdders, so sessions on different threads seldom write the same
+ * cache line; the stripes are merged when the metrics are read.
+ * The metrics are read through JMX (see CommandMetricsMXBean) or as text printed at a fixed period.
+ * @author Dany Chucri, Madhur Nutulapati
+ */
+public final class CommandMetrics implements CommandMetricsMXBean {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // buckets per power of two
+    static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS; // covers every non-negative long
+    private static final int STRIPES_PER_CORE = 2;
+    private static final Command[] COMMANDS = Command.values();
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final int STRIPE_LENGTH = COMMANDS.length * (BUCKETS + 1); // buckets, then the maximum, per command
+    private static final String OBJECT_NAME = "rubank:type=CommandMetrics";
+    private static final CommandMetrics SHARED = new CommandMetrics();
+
+    private final AtomicLongArray[] stripes; // per stripe: each command's bucket counts followed by its longest time
+    private final LongAdder[] totals = adders(COMMANDS.length); // total nanoseconds per command
+    private final LongAdder[] outcomes = adders(OUTCOMES.length); // count per outcome
+
+    /**
+     * A timed command.
+     */
+    public enum Command {
+        OPEN("O"),
+        CLOSE("C"),
+        DEPOSIT("D"),
+        WITHDRAW("W"),
+        PRINT("P"),
+        PRINT_FEES_AND_INTERESTS("PI"),
+        UPDATE_BALANCES("UB"),
+        PRINT_PROJECTED_BALANCES("PF"),
+        INVALID("?"); // any other command
+
+        private final String code;
+
+        Command(String code) {
+            this.code = code;
+        }
+
+        /**
+         * Basic getter for the code the command is typed as.
+         * @return The code, such as "PI".
+         */
+        public String getCode() {
+            return code;
+        }
+    }
+
+    /**
+     * A counted result of a command that reached the database.
+     */
+    public enum Outcome {
+        OPENED,
+        DUPLICATE,
+        CLOSED,
+        DEPOSITED,
+        WITHDRAWN,
+        INSUFFICIENT_FUNDS,
+        NOT_FOUND
+    }
+
+    /**
+     * Creates empty metrics. Sessions normally share the ones from shared().
+     */
+    public CommandMetrics() {
+        stripes = new AtomicLongArray[Integer.highestOneBit(
+                Runtime.getRuntime().availableProcessors() * STRIPES_PER_CORE - 1) << 1];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new AtomicLongArray(STRIPE_LENGTH);
+        }
+    }
+
+    /**
+     * Creates zeroed adders.
+     * @param count The number of adders.
+     * @return The adders.
+     */
+    private static LongAdder[] adders(int count) {
+        LongAdder[] adders = new LongAdder[count];
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Picks the calling thread's stripe.
+     * @return The stripe to record into.
+     */
+    private AtomicLongArray stripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Basic getter for the metrics every TransactionManager session records into.
+     * @return The shared metrics.
+     */
+    public static CommandMetrics shared() {
+        return SHARED;
+    }
+
+    /**
+     * Records one run of a command.
+     * @param command The command.
+     * @param nanos How long it took, in nanoseconds.
+     */
+    public void record(Command command, long nanos) {
+        int c = command.ordinal();
+        AtomicLongArray stripe = stripe();
+        int base = c * (BUCKETS + 1);
+        stripe.getAndIncrement(base + bucketOf(nanos));
+        totals[c].add(nanos);
+        int maxIndex = base + BUCKETS;
+        long max = stripe.get(maxIndex);
+        while (nanos > max && !stripe.compareAndSet(maxIndex, max, nanos)) {
+            max = stripe.get(maxIndex);
+        }
+    }
+
+    /**
+     * Counts one outcome.
+     * @param outcome The outcome.
+     */
+    public void increment(Outcome outcome) {
+        outcomes[outcome.ordinal()].increment();
+    }
+
+    /**
+     * Finds the histogram bucket of a latency.
+     * @param nanos The latency, in nanoseconds; negative values count as 0.
+     * @return The bucket index.
+     */
+    static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((nanos >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Finds the largest latency that falls in a bucket.
+     * @param bucket The bucket index.
+     * @return The upper bound of the bucket, in nanoseconds.
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Basic getter for the number of times a command ran.
+     * @param command The command.
+     * @return The count.
+     */
+    public long count(Command command) {
+        long count = 0;
+        for (long bucket : counts(command)) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    /**
+     * Merges a command's histogram across the stripes.
+     * @param command The command.
+     * @return The count in each bucket.
+     */
+    private long[] counts(Command command) {
+        long[] counts = new long[BUCKETS];
+        int base = command.ordinal() * (BUCKETS + 1);
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += stripe.get(base + i);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Finds a command's longest time across the stripes.
+     * @param command The command.
+     * @return The longest time in nanoseconds, or 0 if it never ran.
+     */
+    private long max(Command command) {
+        int index = command.ordinal() * (BUCKETS + 1) + BUCKETS;
+        long max = 0;
+        for (AtomicLongArray stripe : stripes) {
+            max = Math.max(max, stripe.get(index));
+        }
+        return max;
+    }
+
+    /**
+     * Basic getter for the number of times an outcome occurred.
+     * @param outcome The outcome.
+     * @return The count.
+     */
+    public long count(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+
+    /**
+     * Finds a percentile of a command's latency.
+     * @param command The command.
+     * @param fraction The percentile as a fraction, such as 0.99.
+     * @return The latency in nanoseconds, rounded up to its bucket's bound, or 0 if the command never ran.
+     */
+    public long percentile(Command command, double fraction) {
+        long[] counts = counts(command);
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max(command));
+            }
+        }
+        return max(command);
+    }
+
+    @Override
+    public Map<String, Long> getCommandCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Command command : COMMANDS) {
+            counts.put(command.getCode(), count(command));
+        }
+        return counts;
+    }
+
+    @Override
+    public Map<String, Double> getP50Micros() {
+        return percentiles(0.50);
+    }
+
+    @Override
+    public Map<String, Double> getP99Micros() {
+        return percentiles(0.99);
+    }
+
+    @Override
+    public Map<String, Double> getP999Micros() {
+        return percentiles(0.999);
+    }
+
+    @Override
+    public Map<String, Double> getMaxMicros() {
+        Map<String, Double> max = new LinkedHashMap<>();
+        for (Command command : COMMANDS) {
+            max.put(command.getCode(), max(command) / 1e3);
+        }
+        return max;
+    }
+
+    /**
+     * Finds a percentile of every command's latency.
+     * @param fraction The percentile as a fraction.
+     * @return The latencies in microseconds, keyed by command code.
+     */
+    private Map<String, Double> percentiles(double fraction) {
+        Map<String, Double> percentiles = new LinkedHashMap<>();
+        for (Command command : COMMANDS) {
+            percentiles.put(command.getCode(), percentile(command, fraction) / 1e3);
+        }
+        return percentiles;
+    }
+
+    @Override
+    public Map<String, Long> getOutcomeCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Outcome outcome : OUTCOMES) {
+            counts.put(outcome.name(), count(outcome));
+        }
+        return counts;
+    }
+
+    /**
+     * Represents the metrics as text, one line per command that ran followed by the outcome counts:
+     * <pre>
+     * D count=1200 mean=4.1us p50=3.8us p99=12.0us p99.9=40.0us max=51.2us
+     * outcomes: OPENED=1000 DUPLICATE=3 ...
+     * </pre>
+     * @return The report.
+     */
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Command command : COMMANDS) {
+            long count = count(command);
+            if (count == 0) {
+                continue;
+            }
+            report.append(command.getCode())
+                    .append(" count=").append(count)
+                    .append(String.format(" mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                            totals[command.ordinal()].sum() / 1e3 / count,
+                            percentile(command, 0.50) / 1e3, percentile(command, 0.99) / 1e3,
+                            percentile(command, 0.999) / 1e3, max(command) / 1e3))
+                    .append(System.lineSeparator());
+        }
+        report.append("outcomes:");
+        for (Outcome outcome : OUTCOMES) {
+            report.append(' ').append(outcome.name()).append('=').append(count(outcome));
+        }
+        return report.append(System.lineSeparator()).toString();
+    }
+
+    @Override
+    public void reset() {
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < STRIPE_LENGTH; i++) {
+                stripe.set(i, 0);
+            }
+        }
+        for (LongAdder total : totals) {
+            total.reset();
+        }
+        for (LongAdder outcome : outcomes) {
+            outcome.reset();
+        }
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as "rubank:type=CommandMetrics".
+     * Registering when something is already registered under that name does nothing.
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // already registered, such as by an earlier session
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    /**
+     * Prints the report at a fixed period on a background daemon thread.
+     * @param period The time between reports.
+     * @param out Where to print them.
+     * @return Stops the reports when closed.
+     */
+    public Closeable dumpEvery(Duration period, PrintStream out) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "command-metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = period.toMillis();
+        timer.scheduleAtFixedRate(() -> {
+            out.print(getReport());
+            out.flush();
+        }, millis, millis, TimeUnit.MILLISECONDS);
+        return timer::shutdownNow;
+    }
+}
@@ -0,0 +1,51 @@
+package src.rubank;
+
+import java.util.Map;
+
+/**
+ * JMX view of CommandMetrics, registered as "rubank:type=CommandMetrics".
+ * Latencies are in microseconds and keyed by command code (O, C, D, W, P, PI, UB, or ? for an invalid command);
+ * outcome counts are keyed by outcome name, such as INSUFFICIENT_FUNDS.
+ * @author Dany Chucri, Madhur Nutulapati
+ */
+public interface CommandMetricsMXBean {
+    /**
+     * @return The number of times each command ran.
+     */
+    Map<String, Long> getCommandCounts();
+
+    /**
+     * @return The median latency of each command, in microseconds.
+     */
+    Map<String, Double> getP50Micros();
+
+    /**
+     * @return The 99th percentile latency of each command, in microseconds.
+     */
+    Map<String, Double> getP99Micros();
+
+    /**
+     * @return The 99.9th percentile latency of each command, in microseconds.
+     */
+    Map<String, Double> getP999Micros();
+
+    /**
+     * @return The longest latency of each command, in microseconds.
+     */
+    Map<String, Double> getMaxMicros();
+
+    /**
+     * @return The number of times each outcome occurred.
+     */
+    Map<String, Long> getOutcomeCounts();
+
+    /**
+     * @return Every metric as the text the periodic dump prints.
+     */
+    String getReport();
+
+    /**
+     * Clears every histogram and counter.
+     */
+    void reset();
+}
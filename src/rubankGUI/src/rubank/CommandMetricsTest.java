@@ -0,0 +1,66 @@
+package src.rubank;
+
+import org.junit.jupiter.api.Test;
+import src.rubank.CommandMetrics.Command;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CommandMetricsTest {
+
+    @Test
+    void bucket_Edges_Are_Exact_Below_8_And_Log_Linear_Above() {
+        assertEquals(0, CommandMetrics.bucketOf(0));
+        assertEquals(7, CommandMetrics.bucketOf(7));
+        assertEquals(8, CommandMetrics.bucketOf(8));
+        assertEquals(15, CommandMetrics.bucketOf(15));
+        assertEquals(16, CommandMetrics.bucketOf(16));
+        assertEquals(16, CommandMetrics.bucketOf(17));
+        assertEquals(17, CommandMetrics.bucketOf(18));
+        assertEquals(CommandMetrics.BUCKETS - 1, CommandMetrics.bucketOf(Long.MAX_VALUE));
+
+        assertEquals(0, CommandMetrics.upperBoundOf(0));
+        assertEquals(7, CommandMetrics.upperBoundOf(7));
+        assertEquals(8, CommandMetrics.upperBoundOf(8));
+        assertEquals(15, CommandMetrics.upperBoundOf(15));
+        assertEquals(17, CommandMetrics.upperBoundOf(16));
+        assertEquals(Long.MAX_VALUE, CommandMetrics.upperBoundOf(CommandMetrics.BUCKETS - 1));
+    }
+
+    @Test
+    void percentile_Reports_The_Upper_Bound_Of_Its_Bucket_Capped_At_The_Maximum() {
+        CommandMetrics metrics = new CommandMetrics();
+        for (long nanos = 1; nanos <= 100; nanos++) {
+            metrics.record(Command.DEPOSIT, nanos);
+        }
+        assertEquals(100, metrics.count(Command.DEPOSIT));
+        assertEquals(51, metrics.percentile(Command.DEPOSIT, 0.50)); // 50 falls in the bucket 48 to 51
+        assertEquals(100, metrics.percentile(Command.DEPOSIT, 1.0)); // its bucket ends at 103, past the maximum
+        assertEquals(0, metrics.percentile(Command.WITHDRAW, 0.50));
+    }
+
+    @Test
+    void records_From_Many_Threads_Are_Merged() throws InterruptedException {
+        CommandMetrics metrics = new CommandMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            long nanos = 1000L * (t + 1);
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.record(Command.OPEN, nanos);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80_000, metrics.count(Command.OPEN));
+        assertEquals(8000, metrics.percentile(Command.OPEN, 1.0));
+        metrics.reset();
+        assertEquals(0, metrics.count(Command.OPEN));
+        assertEquals(0, metrics.percentile(Command.OPEN, 1.0));
+    }
+}
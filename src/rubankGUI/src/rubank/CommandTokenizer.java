@@ -0,0 +1,187 @@
+package src.rubank;
+
+import java.util.Arrays;
+
+/**
+ * Reusable tokenizer for Transaction Manager command lines.
+ * Splits a line into tokens separated by runs of spaces and tabs, after trimming the line the way
+ * String.trim() does, and records each token as offsets into the line instead of building substrings.
+ * Tokens are only copied into Strings when a command asks for one with token().
+ * One instance is reused for every line read by one thread.
+ * @author Dany Chucri, Madhur Nutulapati
+ */
+public class CommandTokenizer {
+    private static final int INITIAL_TOKENS = 8;
+
+    private CharSequence line; // the line being tokenized
+    private int[] starts; // start offset of each token, inclusive
+    private int[] ends; // end offset of each token, exclusive
+    private TokenView[] views; // reusable CharSequence view of each token
+    private int count; // number of tokens in the line
+
+    /**
+     * Creates an instance of CommandTokenizer with room for a typical command.
+     */
+    public CommandTokenizer() {
+        starts = new int[INITIAL_TOKENS];
+        ends = new int[INITIAL_TOKENS];
+        views = new TokenView[INITIAL_TOKENS];
+        for (int i = 0; i < INITIAL_TOKENS; i++) {
+            views[i] = new TokenView(i);
+        }
+    }
+
+    /**
+     * Tokenizes a command line, replacing the tokens of the previous line.
+     * Characters up to ' ' are trimmed from both ends, as String.trim() does; inside the line only
+     * spaces and tabs separate tokens.
+     * @param commandLine The line to be tokenized.
+     * @return The number of tokens; 0 for a blank line.
+     */
+    public int tokenize(CharSequence commandLine) {
+        line = commandLine;
+        count = 0;
+        int from = 0;
+        int to = commandLine.length();
+        while (from < to && commandLine.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && commandLine.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        int i = from;
+        while (i < to) {
+            int start = i;
+            while (i < to && !isSeparator(commandLine.charAt(i))) {
+                i++;
+            }
+            add(start, i);
+            while (i < to && isSeparator(commandLine.charAt(i))) {
+                i++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Basic getter for the number of tokens in the current line.
+     * @return The number of tokens.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Checks whether a token is exactly the given text.
+     * @param index The token index.
+     * @param text The text to compare with.
+     * @return true if the token and text have the same characters.
+     */
+    public boolean tokenEquals(int index, String text) {
+        int start = starts[index];
+        int length = ends[index] - start;
+        if (length != text.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (line.charAt(start + i) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a token into a new String.
+     * @param index The token index.
+     * @return The token text.
+     * @throws ArrayIndexOutOfBoundsException if there is no such token, like indexing a String[] would.
+     */
+    public String token(int index) {
+        checkIndex(index);
+        return line.subSequence(starts[index], ends[index]).toString();
+    }
+
+    /**
+     * Returns a view of a token without copying it. The view is reused, and reads the current line,
+     * so it is only valid until the next call to tokenize().
+     * @param index The token index.
+     * @return The token as a CharSequence.
+     * @throws ArrayIndexOutOfBoundsException if there is no such token.
+     */
+    public CharSequence view(int index) {
+        checkIndex(index);
+        return views[index];
+    }
+
+    /**
+     * Throws like a String[] would when index is not a token of the current line.
+     * @param index The token index.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new ArrayIndexOutOfBoundsException("Index " + index + " out of bounds for length " + count);
+        }
+    }
+
+    /**
+     * Records a token, growing the offset arrays if the line has more tokens than any line before.
+     * @param start The start offset of the token, inclusive.
+     * @param end The end offset of the token, exclusive.
+     */
+    private void add(int start, int end) {
+        if (count == starts.length) {
+            int capacity = starts.length * 2;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            TokenView[] moreViews = Arrays.copyOf(views, capacity);
+            for (int i = views.length; i < capacity; i++) {
+                moreViews[i] = new TokenView(i);
+            }
+            views = moreViews;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        count++;
+    }
+
+    /**
+     * Only spaces and tabs separate tokens, as in the original replaceAll() and split(" ") parsing.
+     * @param c The character.
+     * @return true for ' ' and '\t'.
+     */
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    /**
+     * CharSequence over one token slot of the current line.
+     */
+    private class TokenView implements CharSequence {
+        private final int index;
+
+        TokenView(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public int length() {
+            return ends[index] - starts[index];
+        }
+
+        @Override
+        public char charAt(int i) {
+            return line.charAt(starts[index] + i);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return line.subSequence(starts[index] + start, starts[index] + end);
+        }
+
+        @Override
+        public String toString() {
+            return line.subSequence(starts[index], ends[index]).toString();
+        }
+    }
+}
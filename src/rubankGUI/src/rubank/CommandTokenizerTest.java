@@ -0,0 +1,85 @@
+package src.rubank;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommandTokenizerTest {
+
+    @Test
+    void runs_Of_Tabs_And_Spaces_Separate_Tokens() {
+        CommandTokenizer token = new CommandTokenizer();
+        assertEquals(6, token.tokenize("D\t\tC  John \t Doe\t 2/19/2000 \t\t100"));
+        assertEquals("D", token.token(0));
+        assertEquals("C", token.token(1));
+        assertEquals("John", token.token(2));
+        assertEquals("Doe", token.token(3));
+        assertEquals("2/19/2000", token.token(4));
+        assertEquals("100", token.token(5));
+    }
+
+    @Test
+    void leading_And_Trailing_Control_Characters_Are_Trimmed() {
+        CommandTokenizer token = new CommandTokenizer();
+        assertEquals(2, token.tokenize("\r\n\t\u0000 PI 12 \u0007\r\n"));
+        assertEquals("PI", token.token(0));
+        assertEquals("12", token.token(1));
+        assertEquals(1, token.tokenize("\u000bP\u0001X\u000c"));
+        assertEquals("P\u0001X", token.token(0)); // only spaces and tabs separate inside the line
+    }
+
+    @Test
+    void blank_Lines_Have_No_Tokens() {
+        CommandTokenizer token = new CommandTokenizer();
+        assertEquals(0, token.tokenize(""));
+        assertEquals(0, token.tokenize(" \t \r"));
+        assertEquals(0, token.count());
+    }
+
+    @Test
+    void lines_With_More_Than_8_Tokens_Grow_The_Tokenizer() {
+        CommandTokenizer token = new CommandTokenizer();
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            line.append(" t").append(i);
+        }
+        assertEquals(20, token.tokenize(line));
+        for (int i = 0; i < 20; i++) {
+            assertEquals("t" + i, token.token(i));
+            assertEquals("t" + i, token.view(i).toString());
+        }
+        assertEquals(2, token.tokenize("O C"));
+        assertEquals("C", token.token(1));
+    }
+
+    @Test
+    void token_Equals_Compares_Length_And_Characters() {
+        CommandTokenizer token = new CommandTokenizer();
+        token.tokenize("PI P UB");
+        assertTrue(token.tokenEquals(0, "PI"));
+        assertFalse(token.tokenEquals(0, "P"));
+        assertFalse(token.tokenEquals(1, "PI"));
+        assertTrue(token.tokenEquals(1, "P"));
+        assertFalse(token.tokenEquals(2, "UX"));
+        assertFalse(token.tokenEquals(2, ""));
+    }
+
+    @Test
+    void view_And_Token_Are_Bounded_By_The_Current_Line() {
+        CommandTokenizer token = new CommandTokenizer();
+        token.tokenize("W MM John Doe 2/19/2000 10");
+        token.tokenize("P");
+        assertEquals(1, token.count());
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> token.token(1));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> token.view(1));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> token.token(-1));
+        assertThrows(ArrayIndexOutOfBoundsException.class, () -> token.view(-1));
+        CharSequence view = token.view(0);
+        assertEquals(1, view.length());
+        assertEquals('P', view.charAt(0));
+        assertEquals("P", view.subSequence(0, 1).toString());
+    }
+}
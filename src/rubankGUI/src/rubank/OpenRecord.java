@@ -0,0 +1,117 @@
+package src.rubank;
+import rubank.*;
+
+/**
+ * An open record parsed from command tokens: the account to open, or the reason it cannot be opened.
+ * The O command and AccountLoader both parse open records here, so a record is checked and rejected
+ * with the same message whether it is typed at the console or read from a file.
+ * @param account The account to be opened, or null if the record was rejected.
+ * @param reason The message the record was rejected with, or null if it was accepted.
+ * @author Dany Chucri, Madhur Nutulapati
+ */
+public record OpenRecord(Account account, String reason) {
+    private static final int  INVALID_DATE= 1;
+    private static final int  NO_TODAY_NO_FUTURE= 2;
+    private static final int  AGE_LIMIT_COLLEGE= 24;
+    private static final int  MIN_AGE= 16;
+
+    /**
+     * Parses and checks an open record of the form "C John Doe 2/19/2000 599.99", followed by the campus code
+     * of a College Checking account or the loyalty of a Savings account.
+     * @param token The tokenized line.
+     * @param first The index of the account type token; 1 after a leading "O", otherwise 0.
+     * @return The account, or the reason the record was rejected.
+     */
+    public static OpenRecord parse(CommandTokenizer token, int first) {
+        int fields = token.count() - first;
+        if (fields == 0) {
+            return reject("Invalid Command!");
+        }
+        if (fields < 5) {
+            return reject("Missing data for opening an account.");
+        }
+        try {
+            String type = token.token(first);
+            String dob = token.token(first + 3);
+            Date date = new Date(dob);
+            String dateError = checkDate(date, dob, type.equals("CC"));
+            if (dateError != null) {
+                return reject(dateError);
+            }
+            long cents;
+            try {
+                cents = Money.parseCents(token.view(first + 4));
+            } catch (Exception e) {
+                return reject("Not a valid amount.");
+            }
+            if (cents <= 0) {
+                return reject("Initial deposit cannot be 0 or negative.");
+            }
+            double balance = Money.toDollars(cents);
+            Profile holder = new Profile(token.token(first + 1), token.token(first + 2), date);
+            return switch (type) {
+                case "C" -> accept(new Checking(holder, balance));
+                case "CC" -> {
+                    Campus campus = campusOf(Integer.parseInt(token.token(first + 5)));
+                    yield campus == null
+                            ? reject("Invalid campus code.")
+                            : accept(new CollegeChecking(holder, balance, campus));
+                }
+                case "MM" -> cents < MoneyMarket.MIN_BALANCE
+                        ? reject("Minimum of $2000 to open a Money Market account.")
+                        : accept(new MoneyMarket(holder, balance));
+                case "S" -> accept(new Savings(holder, balance, Integer.parseInt(token.token(first + 5)) == 1));
+                default -> reject("Error with adding an account.");
+            };
+        } catch (Exception e) {
+            return reject("Error with adding an account.");
+        }
+    }
+
+    /**
+     * Performs the date of birth checks of an open record.
+     * @param date The parsed date of birth.
+     * @param dob The date of birth as typed, for the message.
+     * @param college true for a College Checking account, which has an upper age limit.
+     * @return The reason the date is rejected, or null if it is acceptable.
+     */
+    private static String checkDate(Date date, String dob, boolean college) {
+        int validity = date.isValid();
+        if (validity == INVALID_DATE) {
+            return "DOB invalid: " + dob + " not a valid calendar date!";
+        }
+        else if (validity == NO_TODAY_NO_FUTURE) {
+            return "DOB invalid: " + dob + " cannot be today or a future day.";
+        }
+        int age = date.checkAge();
+        if (college && age >= AGE_LIMIT_COLLEGE) {
+            return "DOB invalid: " + dob + " over 24.";
+        }
+        else if (age < MIN_AGE) {
+            return "DOB invalid: " + dob + " under 16.";
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a campus by its code.
+     * @param code 0 for New Brunswick, 1 for Newark, 2 for Camden.
+     * @return The Campus, or null if the code is not one of those.
+     */
+    private static Campus campusOf(int code) {
+        for (Campus campus : Campus.values()) {
+            if (campus.getValue() == code) {
+                return campus;
+            }
+        }
+        return null;
+    }
+
+    private static OpenRecord accept(Account account) {
+        return new OpenRecord(account, null);
+    }
+
+    private static OpenRecord reject(String reason) {
+        return new OpenRecord(null, reason);
+    }
+}
@@ -1,11 +1,27 @@
 package src.rubank;
 
+import java.io.IOException;
+import java.nio.file.Path;
+
 /**
  * Driver class to run the Transaction Manager class.
+ * Takes an optional journal file and snapshot file; with them, the accounts survive a restart.
+ * The rates file named by the rubank.rates system property is loaded first, and a bad one stops the program.
  * @author Dany Chucri, Madhur Nutulapati
  */
 public class RunProject2 {
-    public static void main(String[] args) {
-        new TransactionManager().run();
+    public static void main(String[] args) throws IOException {
+        if (!TransactionManager.installRates(System.err)) {
+            System.exit(1);
+        }
+        if (args.length > 1) {
+            new TransactionManager(Path.of(args[0]), Path.of(args[1])).run();
+        }
+        else if (args.length > 0) {
+            new TransactionManager(Path.of(args[0])).run();
+        }
+        else {
+            new TransactionManager().run();
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package src.rubank;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Drives a TransactionServer over loopback with many concurrent teller sessions and reports the
+ * throughput and the latency of a D or W command as seen by the client.
+ * Each session opens its own Checking account, alternates deposits and withdrawals of $1.00 so the
+ * balance never runs out, then closes the account and quits.
+ * Arguments: [host [port [sessions [commands-per-session]]]].
+ * @author Dany Chucri, Madhur Nutulapati
+ */
+public class TransactionLoadGenerator {
+    private static final String DEFAULT_HOST = "127.0.0.1";
+    private static final int DEFAULT_SESSIONS = 1000;
+    private static final int DEFAULT_COMMANDS = 200;
+
+    /**
+     * Runs the load and prints a summary.
+     * @param args The command line arguments.
+     * @throws Exception if a session fails.
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : DEFAULT_HOST;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : TransactionServer.DEFAULT_PORT;
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_SESSIONS;
+        int commands = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_COMMANDS;
+
+        long[][] latencies = new long[sessions][];
+        CountDownLatch connected = new CountDownLatch(sessions);
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = TransactionServer.newSessionExecutor();
+        List<Future<?>> results = new ArrayList<>(sessions);
+        for (int i = 0; i < sessions; i++) {
+            int session = i;
+            results.add(executor.submit(() -> {
+                latencies[session] = runSession(host, port, session, commands, connected, go);
+                return null;
+            }));
+        }
+        connected.await();
+        long start = System.nanoTime();
+        go.countDown();
+        for (Future<?> result : results) {
+            result.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        long[] all = new long[sessions * commands];
+        for (int i = 0; i < sessions; i++) {
+            System.arraycopy(latencies[i], 0, all, i * commands, commands);
+        }
+        Arrays.sort(all);
+        System.out.printf("%d sessions, %d commands in %.2f s: %.0f commands/s%n",
+                sessions, all.length, elapsed / 1e9, all.length / (elapsed / 1e9));
+        System.out.printf("latency p50 %.1f us, p99 %.1f us, p99.9 %.1f us, max %.1f us%n",
+                percentile(all, 0.50) / 1e3, percentile(all, 0.99) / 1e3,
+                percentile(all, 0.999) / 1e3, all[all.length - 1] / 1e3);
+    }
+
+    /**
+     * Runs one teller session against the server.
+     * @param host The server host.
+     * @param port The server port.
+     * @param session The number of this session, which names its account holder.
+     * @param commands The number of D and W commands to send.
+     * @param connected Counted down once the session is connected and its account is open.
+     * @param go Released when every session is ready to start.
+     * @return The round-trip time of each D and W command, in nanoseconds.
+     */
+    private static long[] runSession(String host, int port, int session, int commands,
+                                     CountDownLatch connected, CountDownLatch go) {
+        long[] latencies = new long[commands];
+        boolean counted = false;
+        try (Socket socket = new Socket(host, port)) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            String holder = " C Teller" + session + " Load 1/1/1990 ";
+            in.readLine(); // Transaction Manager is running.
+            request(in, out, "O" + holder + "1000");
+            connected.countDown();
+            counted = true;
+            go.await();
+            for (int i = 0; i < commands; i++) {
+                long start = System.nanoTime();
+                request(in, out, ((i & 1) == 0 ? "D" : "W") + holder + "1");
+                latencies[i] = System.nanoTime() - start;
+            }
+            request(in, out, "C" + holder);
+            out.println("Q");
+            out.flush();
+            in.readLine(); // Transaction Manager is terminated.
+            return latencies;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } finally {
+            if (!counted) {
+                connected.countDown();
+            }
+        }
+    }
+
+    /**
+     * Sends one command and waits for its one-line reply.
+     * @param in The reader for the server's replies.
+     * @param out The writer for commands.
+     * @param command The command line.
+     * @return The reply.
+     * @throws IOException if the server disconnects.
+     */
+    private static String request(BufferedReader in, PrintWriter out, String command) throws IOException {
+        out.println(command);
+        out.flush();
+        String reply = in.readLine();
+        if (reply == null) {
+            throw new IOException("Server closed the connection after: " + command);
+        }
+        return reply;
+    }
+
+    /**
+     * Finds a percentile of sorted values.
+     * @param sorted The values, in ascending order.
+     * @param fraction The percentile as a fraction, such as 0.99.
+     * @return The value at that percentile.
+     */
+    private static long percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+}
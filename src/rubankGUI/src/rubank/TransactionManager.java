@@ -1,464 +1,436 @@
 package src.rubank;
 import rubank.*;
 
-import java.util.Scanner;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
 
 /**
  * User interface to process command line input for the Account Database.
  * Can process a single or multiple lines at once.
+ * Each instance is one session with its own output; several sessions can share one concurrent Account Database,
+ * as TransactionServer does for its connections.
  * @author Dany Chucri, Madhur Nutulapati
  */
 public class TransactionManager {
     private final AccountDatabase accountDatabase; // The Database structure to hold bank accounts
-    private static final int OPEN_INDICATION = 1;
-    private static final int CLOSE_INDICATION = 2;
-    private static final int DEPOSIT_INDICATION = 3;
-    private static final int WITHDRAW_INDICATION = 4;
-    private static final int  INVALID_DATE= 1;
+    private final AccountJournal journal; // changes are made durable here before they are printed, or null
+    private final Path snapshotFile; // the accounts are restored from and saved to this file, or null
+    private final PrintStream out; // replies and reports are printed here
+    private final StringBuilder reply = new StringBuilder(); // reused for close, deposit and withdraw replies
+    private final CommandTokenizer token = new CommandTokenizer(); // reused for every command line
+    private final CommandMetrics metrics = CommandMetrics.shared(); // latency and outcomes of every command
     private static final int  NO_TODAY_NO_FUTURE= 2;
+    private static final int MAX_PROJECTION_MONTHS = 600; // PF forecasts at most 50 years ahead
 
     /**
      * Instantiates the TransactionManager using Account Database.
      */
     public TransactionManager(){
-        accountDatabase = new AccountDatabase();
+        this(new AccountDatabase(), System.out);
     }
 
     /**
-     * Begins the reading of standard input, parsing and executing commands for Transaction Manager.
+     * Instantiates a TransactionManager session on a shared Account Database.
+     * @param accountDatabase The database; a concurrent one if other sessions use it at the same time.
+     * @param out Where replies and reports are printed.
      */
-    public void run(){
-        Scanner S = new Scanner(System.in);
-        System.out.println("Transaction Manager is running.");
-        while(true){
-            String fullCommand = S.nextLine().trim();//read + trim
-            if(fullCommand.isEmpty())//blank line
-                continue;
-            String result = fullCommand.replaceAll("\t+", " ");
-            result = result.replaceAll(" +", " ");
-            String[] token = result.split(" ");
-            String command = token[0];
-            switch(command){
-                case "O":
-                    oCommand(token);
-                    break;
-                case "C":
-                    cCommand(token);
-                    break;
-                case "D":
-                    dCommand(token);
-                    break;
-                case "W":
-                    wCommand(token);
-                    break;
-                case "P":
-                    pCommand();
-                    break;
-                case "PI":
-                    piCommand();
-                    break;
-                case "UB":
-                    ubCommand();
-                    break;
-                case "Q":
-                    System.out.println("Transaction Manager is terminated.");
-                    System.exit(0);
-                default:
-                    System.out.println("Invalid command!");
-            }
-        }
+    public TransactionManager(AccountDatabase accountDatabase, PrintStream out){
+        this.accountDatabase = accountDatabase;
+        this.out = out;
+        journal = null;
+        snapshotFile = null;
     }
 
     /**
-     To retrieve the type of bank, given the token string entry
-     @param entry String entry of the token.
-     @return int 1 - for checking; 2 for College checking; 3 for Money Market; 4 for Savings
+     * Instantiates the TransactionManager with a journaled Account Database, rebuilt from the journal file.
+     * @param journalFile The journal file; created if it does not exist.
+     * @throws IOException if the journal cannot be read or written.
      */
-    private int bankType(String entry) {
-        return switch (entry) {
-            case "C" -> 1;
-            case "CC" -> 2;
-            case "MM" -> 3;
-            case "S" -> 4;
-            default -> 5;
-        };
+    public TransactionManager(Path journalFile) throws IOException {
+        this(journalFile, null);
     }
 
     /**
-     To create Checking object to perform the respective operation of opening,closing, depositing, or withdrawing.
-     @param addProfile the Profile object
-     @param balance The user balance information
-     @param operation Indicates either open, close, Deposit, or Withdraw
+     * Instantiates the TransactionManager with a journaled Account Database, restored from a snapshot file
+     * if there is one and brought up to date from the journal file. A new snapshot is saved on exit.
+     * @param journalFile The journal file; created if it does not exist.
+     * @param snapshotFile The snapshot file, or null to replay the whole journal and save no snapshot.
+     * @throws IOException if the snapshot or journal cannot be read, or the journal cannot be written.
      */
-    private void createChecking(Profile addProfile, double balance, int operation){
-        Checking addAccount = new Checking(addProfile,balance);
-        if(operation == OPEN_INDICATION){
-            if (accountDatabase.open(addAccount))
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) opened.");
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) is already in the database.");
-        } else if (operation==CLOSE_INDICATION){
-            if (accountDatabase.close(addAccount)) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) has been closed.");
-            }
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) is not in the database.");
-        } else if (operation==DEPOSIT_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) is not in the database.");
-            } else {
-                accountDatabase.deposit(addAccount);
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) Deposit - balance updated.");
-            }
-        } else if (operation==WITHDRAW_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) is not in the database.");
-            }
-            else {
-                if (accountDatabase.withdraw(addAccount))
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) Withdraw - balance updated.");
-                else
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(C) Withdraw - insufficient fund.");
-            }
-        } else {
-            System.out.println("The account is already on the database.");
-        }
+    public TransactionManager(Path journalFile, Path snapshotFile) throws IOException {
+        accountDatabase = new AccountDatabase();
+        out = System.out;
+        this.snapshotFile = snapshotFile;
+        journal = restore(accountDatabase, journalFile, snapshotFile, out);
     }
 
     /**
-     To create College Checking object to perform the respective operation of opening,closing, depositing, or withdrawing.
-     @param addProfile the Profile object
-     @param balance The user balance information
-     @param code The campus code - > 0 - New Brunswick; 1 - Newark ; 2 - Camden
-     @param operation Indicates either open, close, Deposit, or Withdraw
+     * Installs the rate table named by the rubank.rates system property, printing why if it cannot be used.
+     * Each entry point calls it before any account is touched.
+     * @param err Where to report a file that cannot be loaded.
+     * @return true if the table was installed or no file is named, false if the file cannot be loaded.
      */
-    private void createCollegeChecking(Profile addProfile, double balance, Campus code, int operation){
-        CollegeChecking addAccount = new CollegeChecking(addProfile,balance,code);
-        if(operation==OPEN_INDICATION){
-            if(accountDatabase.open(addAccount))
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) opened.");
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) is already in the database.");
-        } else if(operation==CLOSE_INDICATION){
-            if(accountDatabase.close(addAccount))
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) has been closed.");
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) is not in the database.");
-        } else if (operation==DEPOSIT_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) is not in the database.");
+    public static boolean installRates(PrintStream err) {
+        try {
+            RateTable.installStartupTable();
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            err.println("Cannot load rates file " + System.getProperty(RateTable.RATES_PROPERTY) + ": " + e);
+            return false;
+        }
+    }
 
-            } else {
-                accountDatabase.deposit(addAccount);
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) Deposit - balance updated.");
-            }
-        } else if (operation==WITHDRAW_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) is not in the database.");
-            }
-            else {
-                if (accountDatabase.withdraw(addAccount))
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) Withdraw - balance updated.");
-                else
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(CC) Withdraw - insufficient fund.");
-            }
-        } else{
-            System.out.println("The account is already on the database.");
+    /**
+     * Restores a database from a snapshot file if there is one, then brings it up to date from a journal file
+     * and journals it from then on.
+     * @param database The empty database to restore.
+     * @param journalFile The journal file; created if it does not exist.
+     * @param snapshotFile The snapshot file, or null to replay the whole journal.
+     * @param out Where to report what was restored.
+     * @return The open journal, which the caller closes.
+     * @throws IOException if the snapshot or journal cannot be read, or the journal cannot be written.
+     */
+    static AccountJournal restore(AccountDatabase database, Path journalFile, Path snapshotFile, PrintStream out)
+            throws IOException {
+        long from = 0;
+        if (snapshotFile != null && Files.exists(snapshotFile)) {
+            AccountSnapshot.Restored restored = AccountSnapshot.load(snapshotFile, database);
+            out.println(restored + " from " + snapshotFile + ".");
+            from = restored.journalPosition();
         }
+        AccountJournal journal = AccountJournal.open(journalFile, database, from);
+        out.println(journal.replayed() + " journal records replayed from " + journalFile + ".");
+        return journal;
     }
 
     /**
-     To create Money Market object to perform the respective operation of opening,closing, depositing, or withdrawing.
-     @param addProfile the Profile object
-     @param balance The user balance information
-     @param operation Indicates either open, close, Deposit, or Withdraw
+     * Begins the reading of standard input, parsing and executing commands for Transaction Manager.
+     * Stops at Q, or quietly at the end of the input, closing the journal and saving a snapshot either way.
      */
-    private void createMoneyMarket(Profile addProfile, double balance, int operation){
-        MoneyMarket addAccount = new MoneyMarket(addProfile,balance);
-        if( operation == OPEN_INDICATION ){
-            if (balance < 2000) {
-                System.out.println("Minimum of $2000 to open a Money Market account.");
-            }
-            else if(accountDatabase.open(addAccount))
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) opened.");
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) is already in the database.");
-        } else if(operation==CLOSE_INDICATION){
-            if(accountDatabase.close(addAccount))
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) has been closed.");
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) is not in the database.");
-        } else if (operation==DEPOSIT_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) is not in the database.");
+    public void run(){
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        metrics.registerMBean();
+        out.println("Transaction Manager is running.");
+        boolean quit = serve(in);
+        closeJournal();
+        saveSnapshot();
+        if (quit) {
+            out.println("Transaction Manager is terminated.");
+            System.exit(0);
+        }
+    }
 
-            } else {
-                accountDatabase.deposit(addAccount);
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) Deposit - balance updated.");
-            }
-        } else if (operation==WITHDRAW_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) is not in the database.");
-            }
-            else {
-                if (accountDatabase.withdraw(addAccount))
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) Withdraw - balance updated.");
-                else
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(MM) Withdraw - insufficient fund.");
+    /**
+     * Reads, parses and executes commands until Q or the end of the input.
+     * Output is flushed whenever no further command is already waiting in the input, so a client that sends
+     * a batch of commands gets the replies in one batch.
+     * @param in The commands, one per line.
+     * @return true if the session ended with Q, false at the end of the input.
+     * @throws UncheckedIOException if the input cannot be read.
+     */
+    public boolean serve(BufferedReader in){
+        try {
+            while(true){
+                if (!in.ready())
+                    out.flush();
+                String fullCommand = in.readLine();
+                if (fullCommand == null)//end of input
+                    return false;
+                if (execute(fullCommand))
+                    return true;
             }
-        } else{
-            System.out.println("The account is already on the database.");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            out.flush();
         }
     }
 
     /**
-     To create Savings object to perform the respective operation of opening,closing, depositing, or withdrawing.
-     @param addProfile the Profile object
-     @param balance The user balance information
-     @param loyal indicating whether holder is Loyal or not. 1 Being loyal and otherwise being not loyal.
-     @param operation Indicates either open, close, Deposit, or Withdraw
+     * Parses and executes one command line, printing its reply. The output is not flushed.
+     * @param fullCommand The command line, such as "D C John Doe 2/19/2000 100".
+     * @return true if the command is Q, which the caller acts on; false otherwise.
      */
-    private void createSavings(Profile addProfile, double balance, int loyal, int operation){
-        boolean loyalKey = loyal == 1;
-        Savings addAccount = new Savings(addProfile, balance, loyalKey);
-        if(operation == OPEN_INDICATION){
-            if(accountDatabase.open(addAccount))
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) opened.");
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) is already in the database.");
-        } else if(operation==CLOSE_INDICATION){
-            if(accountDatabase.close(addAccount))
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) has been closed.");
-            else
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) is not in the database.");
-        } else if (operation==DEPOSIT_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) is not in the database.");
+    public boolean execute(String fullCommand){
+        long start = System.nanoTime();
+        CommandMetrics.Command command;
+        if (token.tokenize(fullCommand) == 0)//blank line
+            return false;
+        if (token.tokenEquals(0, "O")) {
+            oCommand(token);
+            command = CommandMetrics.Command.OPEN;
+        }
+        else if (token.tokenEquals(0, "C")) {
+            cCommand(token);
+            command = CommandMetrics.Command.CLOSE;
+        }
+        else if (token.tokenEquals(0, "D")) {
+            dCommand(token);
+            command = CommandMetrics.Command.DEPOSIT;
+        }
+        else if (token.tokenEquals(0, "W")) {
+            wCommand(token);
+            command = CommandMetrics.Command.WITHDRAW;
+        }
+        else if (token.tokenEquals(0, "P")) {
+            pCommand();
+            command = CommandMetrics.Command.PRINT;
+        }
+        else if (token.tokenEquals(0, "PI")) {
+            piCommand();
+            command = CommandMetrics.Command.PRINT_FEES_AND_INTERESTS;
+        }
+        else if (token.tokenEquals(0, "UB")) {
+            ubCommand();
+            command = CommandMetrics.Command.UPDATE_BALANCES;
+        }
+        else if (token.tokenEquals(0, "PF")) {
+            pfCommand(token);
+            command = CommandMetrics.Command.PRINT_PROJECTED_BALANCES;
+        }
+        else if (token.tokenEquals(0, "Q"))
+            return true;
+        else {
+            out.println("Invalid command!");
+            command = CommandMetrics.Command.INVALID;
+        }
+        metrics.record(command, System.nanoTime() - start);
+        return false;
+    }
 
-            } else {
-                accountDatabase.deposit(addAccount);
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) Deposit - balance updated.");
-            }
-        } else if (operation==WITHDRAW_INDICATION) {
-            if (!(accountDatabase.contains(addAccount))) {
-                System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) is not in the database.");
-            }
-            else {
-                if (accountDatabase.withdraw(addAccount))
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) Withdraw - balance updated.");
-                else
-                    System.out.println(addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB() + "(S) Withdraw - insufficient fund.");
-            }
-        } else{
-            System.out.println("The account is already on the database.");
+    /**
+     * Forces the journal to disk and closes it, if there is one.
+     */
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     /**
-     Helper method to give us the respective phrase for the enum Campus class.
-     @param campCode 0-New Brunswick; 1-Newark;2-Camden
-     @return string returning the phrase for the respective campCode integer
+     * Saves a snapshot of the accounts, if there is a snapshot file. Called after the journal is closed, so the
+     * snapshot never points past the end of the journal on disk.
      */
-    private String checkCampusCode(int campCode){
-        if(campCode==0){
-            return "NEW_BRUNSWICK";
-        } else if (campCode==1) {
-            return "NEWARK";
-        } else if (campCode==2) {
-            return "CAMDEN";
+    private void saveSnapshot() {
+        if (snapshotFile == null) {
+            return;
         }
-        else{
-            return "INVALID";
+        try {
+            accountDatabase.snapshot().write(snapshotFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 
     /**
-     * Command for opening an Account to the Account Database.
-     * @param token An array of tokens from the command-line arguments.
+     To open a new account and print whether it was opened.
+     @param addAccount the account to be opened
      */
-    private void oCommand(String[] token) {
-        if (token.length == 1) {
-            System.out.println("Invalid Command!");
-        }
-        else if (token.length >= 2 && token.length <= 5) {
-            System.out.println("Missing data for opening an account.");
-        }
-        else try {
-            int key = bankType(token[1]);
-            Date dateInput = createDate(token[4], key);
-            if (dateInput == null) return;
-            Profile addProfile = new Profile(token[2], token[3], dateInput);
-            double balance;
-            try { balance = Double.parseDouble(token[5]);
-            } catch (Exception e) {
-                System.out.println("Not a valid amount.");
-                return;
-            }
-            if (balance <= 0) {
-                System.out.println("Initial deposit cannot be 0 or negative.");
-                return;
-            }
-            if (key == 2) {
-                String phraseLoc = checkCampusCode(Integer.parseInt(token[6]));
-                if (phraseLoc.equals("INVALID")) {
-                    System.out.println("Invalid campus code.");
-                }
-                else createCollegeChecking(addProfile, balance, Campus.valueOf(phraseLoc), OPEN_INDICATION);
-            }
-            if (key == 1)
-                createChecking(addProfile, Double.parseDouble(token[5]), OPEN_INDICATION);
-            else if (key == 3)
-                createMoneyMarket(addProfile, Double.parseDouble(token[5]), OPEN_INDICATION);
-            else if (key == 4)
-                createSavings(addProfile, Double.parseDouble(token[5]), Integer.parseInt(token[6]), OPEN_INDICATION);
-            } catch(Exception e){
-            System.out.println("Error with adding an account.");
+    private void openAccount(Account addAccount){
+        Profile addProfile = addAccount.getHolder();
+        String holder = addProfile.getFname() + " " + addProfile.getLname() + " " + addProfile.getDOB()
+                + "(" + addAccount.getKind().getCode() + ")";
+        if (accountDatabase.open(addAccount)) {
+            metrics.increment(CommandMetrics.Outcome.OPENED);
+            out.println(holder + " opened.");
+        }
+        else {
+            metrics.increment(CommandMetrics.Outcome.DUPLICATE);
+            out.println(holder + " is already in the database.");
         }
     }
 
     /**
-     * Instantiates a Date object to be used for the creation of an Account.
-     * Performs error checks on the validity of a date.
-     * @param date A String token in the form of "xx/xx/xxxx".
-     * @param collegeIndication indicates whether it is a college checking account to perform age check
-     * @return The Date object to be used.
+     To print the result of a close, deposit or withdraw command, in the form
+     "John Doe 2/19/2000(C) has been closed."
+     @param token The tokens of the command line; tokens 2 and 3 are the names.
+     @param dob The packed date of birth
+     @param kind The kind of account
+     @param result The result to follow the holder
+     */
+    private void printResult(CommandTokenizer token, int dob, AccountKind kind, String result){
+        reply.setLength(0);
+        reply.append(token.view(2)).append(' ').append(token.view(3)).append(' ');
+        appendDate(dob);
+        reply.append('(').append(kind.getCode()).append(") ").append(result);
+        out.println(reply);
+    }
+
+    /**
+     To append a packed date to the reply in the form Date.toString() prints, "2/19/2000".
+     @param dob The packed date
      */
-    private Date createDate(String date, int collegeIndication){
-        Date addDate = new Date(date);
-        if(addDate.isValid() == INVALID_DATE){
-            System.out.println("DOB invalid: " + date + " not a valid calendar date!");
-            return null;
-        } else if (addDate.isValid() == NO_TODAY_NO_FUTURE) {
-            System.out.println("DOB invalid: " + date + " cannot be today or a future day.");
-            return null;
-        } else if(collegeIndication == 2 && addDate.checkAge() >= 24){
-            System.out.println("DOB invalid: " + date + " over 24.");
-            return null;
-        } else if (addDate.checkAge()<16) {
-            System.out.println("DOB invalid: " + date + " under 16.");
-            return null;
-        }
-        return addDate;
+    private void appendDate(int dob){
+        reply.append(Date.monthOf(dob)).append('/').append(Date.dayOf(dob)).append('/').append(Date.yearOf(dob));
+    }
+
+    /**
+     * Command for opening an Account to the Account Database.
+     * The record is parsed and checked by OpenRecord, as AccountLoader does for a file.
+     * @param token The tokens of the command line.
+     */
+    private void oCommand(CommandTokenizer token) {
+        OpenRecord record = OpenRecord.parse(token, 1);
+        if (record.account() == null) {
+            out.println(record.reason());
+            return;
+        }
+        try {
+            openAccount(record.account());
+        } catch(Exception e){
+            out.println("Error with adding an account.");
+        }
     }
 
     /**
      * Command for closing an Account from the Account Database.
-     * @param token An array of tokens from the command-line arguments.
+     * Looks the account up by its tokens, without building a Profile or an Account.
+     * @param token The tokens of the command line.
      */
-    private void cCommand(String[] token){
-        if(token.length!=5){
-            System.out.println("Missing data for closing an account.");
+    private void cCommand(CommandTokenizer token){
+        if(token.count()!=5){
+            out.println("Missing data for closing an account.");
             return;
         }
         try{
-            int key = bankType(token[1]);
-            Date dateInput = new Date(token[4]);
-            if (dateInput.isValid() == 2) {
-                System.out.println("DOB invalid: " + dateInput + " cannot be today or a future day.");
+            AccountKind kind = AccountKind.fromCode(token.view(1));
+            int dob = Date.parsePacked(token.view(4));
+            if (Date.isValid(dob) == NO_TODAY_NO_FUTURE) {
+                printFutureDob(dob);
                 return;
             }
-            Profile closeAccount = new Profile(token[2],token[3],dateInput);
-            if(key==1)
-                createChecking(closeAccount,0,CLOSE_INDICATION);
-            else if(key==2){
-                createCollegeChecking(closeAccount,0, Campus.NEW_BRUNSWICK,CLOSE_INDICATION);}
-            else if(key ==3)
-                createMoneyMarket(closeAccount,0,CLOSE_INDICATION);
-            else if(key == 4)
-                createSavings(closeAccount,0,0,CLOSE_INDICATION);
-            else
-                System.out.println("Not valid Bank Type 2");//specify
+            if (kind == null)
+                out.println("Not valid Bank Type 2");//specify
+            else if (accountDatabase.close(kind, token.view(2), token.view(3), dob)) {
+                metrics.increment(CommandMetrics.Outcome.CLOSED);
+                printResult(token, dob, kind, "has been closed.");
+            }
+            else {
+                metrics.increment(CommandMetrics.Outcome.NOT_FOUND);
+                printResult(token, dob, kind, "is not in the database.");
+            }
         }catch (Exception e){
-            System.out.println("Error processing command");
+            out.println("Error processing command");
         }
     }
 
     /**
-     * Will check the balance when called
-     * @param token An array of tokens from the command-line arguments.
+     * To print that a date of birth of a close, deposit or withdraw command is today or in the future.
+     * @param dob The packed date of birth
+     */
+    private void printFutureDob(int dob) {
+        reply.setLength(0);
+        reply.append("DOB invalid: ");
+        appendDate(dob);
+        reply.append(" cannot be today or a future day.");
+        out.println(reply);
+    }
+
+    /**
+     * Will check the amount when called
+     * @param token The amount token of the command line.
      * @param type deposit or withdrawal
+     * @return The amount in cents, or -1 if it was not valid.
      */
-    private double checkBalance(String token, String type) {
-        double balanceAmount;
+    private long checkAmount(CharSequence token, String type) {
+        long amount;
         try {
-            balanceAmount = Double.parseDouble(token);
+            amount = Money.parseCents(token);
         } catch (Exception e) {
-            System.out.println("Not a valid amount.");
+            out.println("Not a valid amount.");
             return -1;
         }
-        if (balanceAmount <= 0){
-            String s;
-            if (type.equals("Deposit")) s = "Deposit";
-            else s = "Withdraw";
-            System.out.println(s + " - amount cannot be 0 or negative.");
+        if (amount <= 0){
+            out.println(type + " - amount cannot be 0 or negative.");
             return -1;
         }
-        return balanceAmount;
+        return amount;
     }
 
     /**
      * Command for depositing into Account from the Account Database.
-     * @param token An array of tokens from the command-line arguments.
+     * Looks the account up by its tokens, without building a Profile or an Account.
+     * @param token The tokens of the command line.
      */
-    private void dCommand(String[] token) {
-        if(token.length!=6){
-            System.out.println("Invalid command format.");
+    private void dCommand(CommandTokenizer token) {
+        if(token.count()!=6){
+            out.println("Invalid command format.");
             return;
         }
         try{
-            int key = bankType(token[1]);
-            Date dateInput = new Date(token[4]);
-            if (dateInput.isValid() == 2) {
-                System.out.println("DOB invalid: " + dateInput + " cannot be today or a future day.");
+            AccountKind kind = AccountKind.fromCode(token.view(1));
+            int dob = Date.parsePacked(token.view(4));
+            if (Date.isValid(dob) == NO_TODAY_NO_FUTURE) {
+                printFutureDob(dob);
                 return;
             }
-            double depositAmount = checkBalance(token[5], "Deposit");
-            if (depositAmount <= 0) return;
-            Profile depositAccount = new Profile(token[2],token[3],dateInput);
-            if(key==1)
-                createChecking(depositAccount,depositAmount,DEPOSIT_INDICATION);
-            else if(key==2)
-                createCollegeChecking(depositAccount,depositAmount, Campus.NEW_BRUNSWICK,DEPOSIT_INDICATION);
-            else if(key ==3)
-                createMoneyMarket(depositAccount,depositAmount,DEPOSIT_INDICATION);
-            else if(key == 4)
-                createSavings(depositAccount,depositAmount,0,DEPOSIT_INDICATION);
+            long depositAmount = checkAmount(token.view(5), "Deposit");
+            if (depositAmount <= 0 || kind == null) return;
+            if (accountDatabase.deposit(kind, token.view(2), token.view(3), dob, depositAmount) == AccountDatabase.Outcome.DONE) {
+                metrics.increment(CommandMetrics.Outcome.DEPOSITED);
+                printResult(token, dob, kind, "Deposit - balance updated.");
+            }
+            else {
+                metrics.increment(CommandMetrics.Outcome.NOT_FOUND);
+                printResult(token, dob, kind, "is not in the database.");
+            }
         }catch (Exception e){
-            System.out.println("Error processing command");
+            out.println("Error processing command");
         }
     }
 
     /**
      * Command for withdrawing from Account from the Account Database.
-     * @param token An array of tokens from the command-line arguments.
+     * Looks the account up by its tokens, without building a Profile or an Account.
+     * @param token The tokens of the command line.
      */
-    private void wCommand(String [] token){
-        if(token.length!=6){
-            System.out.println("Invalid command format.");
+    private void wCommand(CommandTokenizer token){
+        if(token.count()!=6){
+            out.println("Invalid command format.");
             return;
         }
         try{
-            int key = bankType(token[1]);
-            Date dateInput = new Date(token[4]);
-            if (dateInput.isValid() == 2) {
-                System.out.println("DOB invalid: " + dateInput + " cannot be today or a future day.");
+            AccountKind kind = AccountKind.fromCode(token.view(1));
+            int dob = Date.parsePacked(token.view(4));
+            if (Date.isValid(dob) == NO_TODAY_NO_FUTURE) {
+                printFutureDob(dob);
                 return;
             }
-            double withdrawAmount = checkBalance(token[5], "Withdraw");
+            long withdrawAmount = checkAmount(token.view(5), "Withdraw");
             if (withdrawAmount <= 0) return;
-            Profile depositAccount = new Profile(token[2],token[3],dateInput);
-            if(key==1)
-                createChecking(depositAccount,withdrawAmount,WITHDRAW_INDICATION);
-            else if(key==2)
-                createCollegeChecking(depositAccount,withdrawAmount, Campus.NEW_BRUNSWICK,WITHDRAW_INDICATION);
-            else if(key ==3)
-                createMoneyMarket(depositAccount,withdrawAmount,WITHDRAW_INDICATION);
-            else if(key == 4)
-                createSavings(depositAccount,withdrawAmount,0,WITHDRAW_INDICATION);
-            else
-                System.out.println("Not valid Bank Type 4");//specify
+            if (kind == null) {
+                out.println("Not valid Bank Type 4");//specify
+                return;
+            }
+            switch (accountDatabase.withdraw(kind, token.view(2), token.view(3), dob, withdrawAmount)) {
+                case DONE -> {
+                    metrics.increment(CommandMetrics.Outcome.WITHDRAWN);
+                    printResult(token, dob, kind, "Withdraw - balance updated.");
+                }
+                case INSUFFICIENT_FUNDS -> {
+                    metrics.increment(CommandMetrics.Outcome.INSUFFICIENT_FUNDS);
+                    printResult(token, dob, kind, "Withdraw - insufficient fund.");
+                }
+                default -> {
+                    metrics.increment(CommandMetrics.Outcome.NOT_FOUND);
+                    printResult(token, dob, kind, "is not in the database.");
+                }
+            }
         }catch (Exception e){
-            System.out.println("Error processing command");
+            out.println("Error processing command");
         }
     }
 
@@ -466,21 +438,60 @@ public class TransactionManager {
      *printing sorted accounts from accountDatabase
      */
     private void pCommand(){
-        accountDatabase.printSorted();
+        try (ReportWriter report = report()) {
+            accountDatabase.printSorted(report);
+        }
     }
 
     /**
      *printing fees and Interests
      */
     private void piCommand(){
-        accountDatabase.printFeesAndInterests();
+        try (ReportWriter report = report()) {
+            accountDatabase.printFeesAndInterests(report);
+        }
     }
 
     /**
      *printing and updating balances
      */
     private void ubCommand(){
-        accountDatabase.printUpdatedBalances();
+        try (ReportWriter report = report()) {
+            accountDatabase.printUpdatedBalances(report);
+        }
+    }
+
+    /**
+     *printing balances projected a number of months ahead, without changing them
+     * @param token The tokens of the command line, such as "PF 12".
+     */
+    private void pfCommand(CommandTokenizer token){
+        if(token.count()!=2){
+            out.println("Invalid command format.");
+            return;
+        }
+        int months;
+        try {
+            months = Integer.parseInt(token.token(1));
+        } catch (NumberFormatException e) {
+            out.println("Not a valid number of months.");
+            return;
+        }
+        if (months <= 0 || months > MAX_PROJECTION_MONTHS) {
+            out.println("Projection - months must be 1 to " + MAX_PROJECTION_MONTHS + ".");
+            return;
+        }
+        try (ReportWriter report = report()) {
+            accountDatabase.printProjectedBalances(months, report);
+        }
+    }
+
+    /**
+     * Opens a report on this session's output; closing it flushes the report without closing the output.
+     * @return The report writer.
+     */
+    private ReportWriter report(){
+        return ReportWriter.to(new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset())));
     }
 
     public static void main(String[] args){
@@ -0,0 +1,190 @@
+package src.rubank;
+import rubank.*;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the Transaction Manager line protocol (O, C, D, W, P, PI, UB and Q) to many clients over TCP.
+ * Every connection is a TransactionManager session with its own tokenizer and output, running on its own
+ * virtual thread when the JVM has them (Java 21 and later) and on a small-stack platform thread otherwise.
+ * All sessions share one concurrent Account Database. Q ends the client's session, not the server.
+ * @author Dany Chucri, Madhur Nutulapati
+ */
+public class TransactionServer implements Closeable {
+    public static final int DEFAULT_PORT = 7878;
+    private static final int BACKLOG = 4096; // connections the OS queues while the acceptor catches up
+    private static final long PLATFORM_STACK_SIZE = 256 * 1024; // stack of a session thread without virtual threads
+    private static final Duration METRICS_PERIOD = Duration.ofMinutes(1); // time between metric dumps to the console
+    private static final AtomicInteger THREADS = new AtomicInteger(); // numbers the platform session threads
+
+    private final ServerSocket serverSocket; // accepts the client connections
+    private final AccountDatabase accountDatabase; // shared by every session
+    private final ExecutorService sessions; // runs one task per connection
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet(); // open client connections
+    private final Thread acceptor; // accepts connections and hands them to sessions
+
+    /**
+     * Binds a server to an address. Call start() to accept connections.
+     * @param address The address to listen on, such as the loopback address and a port.
+     * @param accountDatabase The database every session shares; it must be a concurrent one.
+     * @throws IOException if the address cannot be bound.
+     */
+    public TransactionServer(InetSocketAddress address, AccountDatabase accountDatabase) throws IOException {
+        this.accountDatabase = accountDatabase;
+        this.serverSocket = new ServerSocket();
+        serverSocket.bind(address, BACKLOG);
+        this.sessions = newSessionExecutor();
+        this.acceptor = new Thread(this::accept, "transaction-server-acceptor");
+    }
+
+    /**
+     * Creates an executor that runs each task on a new virtual thread when the JVM supports them,
+     * and otherwise on a cached pool of daemon platform threads with small stacks.
+     * @return The executor for sessions.
+     */
+    static ExecutorService newSessionExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, "session-" + THREADS.incrementAndGet(), PLATFORM_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Starts accepting connections in the background.
+     */
+    public void start() {
+        acceptor.start();
+    }
+
+    /**
+     * Basic getter for the port the server listens on, useful when it was bound to port 0.
+     * @return The local port.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections until the server socket is closed.
+     */
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (SocketException e) {
+                return; // closed by close()
+            } catch (IOException e) {
+                continue;
+            }
+            connections.add(socket);
+            sessions.execute(() -> serve(socket));
+        }
+    }
+
+    /**
+     * Runs one client's session until it sends Q or disconnects.
+     * @param socket The client connection.
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            PrintStream out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8);
+            out.println("Transaction Manager is running.");
+            if (new TransactionManager(accountDatabase, out).serve(in)) {
+                out.println("Transaction Manager is terminated.");
+            }
+            out.flush();
+        } catch (IOException | UncheckedIOException e) {
+            // the client went away; its completed commands stand
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Stops accepting connections, disconnects every client and waits for their sessions to end.
+     * Commands already executed stand; the caller closes the database's journal afterwards.
+     * @throws IOException if the server socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        sessions.shutdown();
+        try {
+            sessions.awaitTermination(10, TimeUnit.SECONDS);
+            acceptor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a server on the loopback address until the JVM is stopped.
+     * Arguments: [port [journal-file [snapshot-file]]]. With a journal file the accounts survive a restart,
+     * and with a snapshot file a snapshot is saved on shutdown. Command metrics are published over JMX and
+     * printed every minute. A rates file named by the rubank.rates system property that cannot be loaded stops
+     * the server before it binds.
+     * @param args The command line arguments.
+     * @throws IOException if the port cannot be bound or the journal or snapshot cannot be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (!TransactionManager.installRates(System.err)) {
+            System.exit(1);
+        }
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        Path journalFile = args.length > 1 ? Path.of(args[1]) : null;
+        Path snapshotFile = args.length > 2 ? Path.of(args[2]) : null;
+        AccountDatabase database = AccountDatabase.concurrent(1024);
+        AccountJournal journal = journalFile != null
+                ? TransactionManager.restore(database, journalFile, snapshotFile, System.out)
+                : null;
+        TransactionServer server = new TransactionServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), database);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+                if (journal != null) {
+                    journal.close();
+                }
+                if (snapshotFile != null) {
+                    database.snapshot().write(snapshotFile);
+                }
+            } catch (IOException e) {
+                System.err.println("Shutdown failed: " + e);
+            }
+        }));
+        CommandMetrics.shared().registerMBean();
+        CommandMetrics.shared().dumpEvery(METRICS_PERIOD, System.out);
+        server.start();
+        System.out.println("Transaction Server is listening on " + server.serverSocket.getLocalSocketAddress() + ".");
+    }
+}
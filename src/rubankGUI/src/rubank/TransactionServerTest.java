@@ -0,0 +1,113 @@
+package src.rubank;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import rubank.AccountDatabase;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionServerTest {
+    private AccountDatabase accountDatabase;
+    private TransactionServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        accountDatabase = AccountDatabase.concurrent(16);
+        server = new TransactionServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), accountDatabase);
+        server.start();
+    }
+
+    @AfterEach
+    void closeServer() throws IOException {
+        server.close();
+    }
+
+    /**
+     * One client connection, reading the server's replies line by line.
+     */
+    private static final class Client implements Closeable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Client(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setSoTimeout(10_000);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            assertEquals("Transaction Manager is running.", in.readLine());
+        }
+
+        String send(String command) throws IOException {
+            out.println(command);
+            return in.readLine();
+        }
+
+        /**
+         * Reads until the server ends the connection.
+         * @return true if it ended, whether by end of stream or by a reset.
+         */
+        boolean disconnected() throws IOException {
+            try {
+                return in.readLine() == null;
+            } catch (SocketException e) {
+                return true;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    @Test
+    void two_Sessions_Share_One_Database() throws IOException {
+        try (Client teller = new Client(server.getPort()); Client atm = new Client(server.getPort())) {
+            assertEquals("John Doe 2/19/2000(C) opened.", teller.send("O C John Doe 2/19/2000 599.99"));
+            assertEquals("John Doe 2/19/2000(C) Deposit - balance updated.", atm.send("D C John Doe 2/19/2000 100.01"));
+            assertEquals("John Doe 2/19/2000(C) is already in the database.", atm.send("O C John Doe 2/19/2000 5"));
+            assertEquals("John Doe 2/19/2000(C) Withdraw - insufficient fund.", teller.send("W C John Doe 2/19/2000 700.01"));
+            assertEquals("John Doe 2/19/2000(C) Withdraw - balance updated.", teller.send("W C John Doe 2/19/2000 700"));
+        }
+    }
+
+    @Test
+    void q_Ends_Only_That_Clients_Session() throws IOException {
+        try (Client leaving = new Client(server.getPort()); Client staying = new Client(server.getPort())) {
+            assertEquals("John Doe 2/19/2000(C) opened.", leaving.send("O C John Doe 2/19/2000 100"));
+            assertEquals("Transaction Manager is terminated.", leaving.send("Q"));
+            assertTrue(leaving.disconnected());
+            assertEquals("John Doe 2/19/2000(C) Deposit - balance updated.", staying.send("D C John Doe 2/19/2000 50"));
+            try (Client later = new Client(server.getPort())) {
+                assertEquals("Jane Doe 10/1/1995(S) opened.", later.send("O S Jane Doe 10/1/1995 400 1"));
+            }
+        }
+    }
+
+    @Test
+    void close_Disconnects_Idle_Clients_And_Returns() throws IOException {
+        try (Client first = new Client(server.getPort()); Client second = new Client(server.getPort())) {
+            assertEquals("John Doe 2/19/2000(C) opened.", first.send("O C John Doe 2/19/2000 100"));
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> server.close());
+            assertTrue(first.disconnected());
+            assertTrue(second.disconnected());
+        }
+        assertEquals(1, accountDatabase.getNumAcct());
+    }
+}